@@ -2,14 +2,30 @@ package com.github.falsepattern.succ4j.datafiles;
 
 import com.github.falsepattern.util.CustomFileWatcher;
 import com.github.falsepattern.util.FalseUtil;
+import com.github.falsepattern.util.Pair;
 import com.github.falsepattern.succ4j.Utilities;
 import com.github.falsepattern.succ4j.datafiles.abstractions.IDataFileOnDisk;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.SuccWriter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DataFile extends ReadableWritableDataFile implements IDataFileOnDisk {
@@ -27,12 +43,23 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
      * @param path The path of the file. Can be either absolute or relative to the default path.
      * @param defaultFileText If there isn't already a file at the path, one can be created from the text supplied here.
      */
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public DataFile(String path, String defaultFileText) {
-        super(defaultFileText);
+        this(path, defaultFileText, LoadOptions.defaultOptions);
+    }
+
+    /**
+     * Creates a new DataFile object corresponding to a SUCC file in system storage.
+     * @param path The path of the file. Can be either absolute or relative to the default path.
+     * @param defaultFileText If there isn't already a file at the path, one can be created from the text supplied here.
+     * @param loadOptions Rules for how the file is read from disk.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public DataFile(String path, String defaultFileText, LoadOptions loadOptions) {
+        super(defaultFileText, loadOptions);
         path = Utilities.absolutePath(path);
         path = FalseUtil.changeExtension(path, Utilities.fileExtension);
         this.filePath = path;
+        this.fingerprint = new FingerprintTracker(Paths.get(path));
 
         try {
             if (!Utilities.succFileExists(path)) {
@@ -48,8 +75,6 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
         }
 
         this.reloadAllData();
-
-        setupWatcher();
     }
 
     @Override
@@ -57,7 +82,7 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
         Path path = Paths.get(filePath);
         if (Files.exists(path)) {
             try {
-                return new String(Files.readAllBytes(path));
+                return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
             } catch (IOException e) {
                 throw new RuntimeException("Error reading file " + path, e);
             }
@@ -66,21 +91,224 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
         return "";
     }
 
+    @Override
+    protected Reader openSavedText() throws IOException {
+        return openSavedText(null);
+    }
+
+    private Reader openSavedText(FileFingerprint.Recorder recorder) throws IOException {
+        Path path = Paths.get(filePath);
+        if (Files.exists(path)) {
+            InputStream in = Files.newInputStream(path);
+            return new InputStreamReader(recorder != null ? recorder.wrap(in) : in, StandardCharsets.UTF_8);
+        }
+
+        return new StringReader("");
+    }
+
     @Override
     public void setSavedText(String text) {
+        save(writer -> {
+            writer.write(text);
+            writer.write(System.lineSeparator());
+        });
+    }
+
+    @Override
+    protected void saveData() {
+        if (saveOptions.journal && canJournalChanges()) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for (String key : journalKeys) {
+                SuccJournal.writeRecord(records, key, getTopLevelNodes().get(key));
+            }
+
+            boolean newJournal = journalSize == 0;
+            if (newJournal) {
+                journalStarted = System.currentTimeMillis();
+            }
+            if (journalSize + records.size() <= saveOptions.journalCompactionBytes
+                && System.currentTimeMillis() - journalStarted < saveOptions.journalCompactionMillis) {
+                try {
+                    SuccJournal.append(journalPath(), records, saveOptions.durability);
+                } catch (IOException e) {
+                    throw new RuntimeException("Error while writing file " + journalPath(), e);
+                }
+                journalSize += records.size();
+                journalKeys.clear();
+                if (newJournal) {
+                    compactJournalLater(saveOptions.journalCompactionMillis);
+                }
+                return;
+            }
+        }
+        saveWholeFile();
+    }
+
+    private void saveWholeFile() {
+        if (saveOptions.saveStrategy == SaveStrategy.patch) {
+            save(new SavedLayout.Contents(unchangedLayout(), getTopLevelLines(), getModificationCount()));
+            return;
+        }
+        save(writer -> {
+            SuccWriter.write(getTopLevelLines(), writer);
+            writer.write(System.lineSeparator()); // same as setSavedText, which writes the text as a single line
+        });
+    }
+
+    // Where the top-level lines are in the file, if it was last written by a patch save. Null if it wasn't, or was loaded since.
+    private volatile SavedLayout layout = null;
+
+    @Override
+    protected void dataReloaded() {
+        super.dataReloaded(); // the replayed journal is part of the saved data, so it counts as saved too
+        layout = null;
+        // the tracking starts over here rather than in parseSavedData, so it matches the data that is actually in use
+        journalSize = replayedJournalSize;
+        journalStarted = System.currentTimeMillis();
+        resetJournalTracking(getModificationCount());
+        if (journalSize > 0) {
+            compactJournalLater(saveOptions.journalCompactionMillis);
+        }
+    }
+
+    // The layout, if nothing else has changed the file since it was saved. Patching a file that was changed would mix the two changes up.
+    private SavedLayout unchangedLayout() {
+        SavedLayout saved = layout;
         try {
-            Files.write(Paths.get(filePath), Collections.singleton(text), StandardOpenOption.TRUNCATE_EXISTING);
+            return saved != null && saved.matches(fingerprint.attributes()) ? saved : null;
         } catch (IOException e) {
-            throw new RuntimeException("Error while writing file " + filePath, e);
+            return null;
         }
+    }
 
-        ignoreNextFileReload.set(true);
+    @Override
+    protected Pair<List<Line>, Map<String, KeyNode>> parseSavedData() throws IOException {
+        // the fingerprint is taken from the bytes as they are parsed, so the file doesn't have to be read twice
+        BasicFileAttributes attributes = fingerprint.attributes();
+        FileFingerprint.Recorder recorder = new FileFingerprint.Recorder();
+        Pair<List<Line>, Map<String, KeyNode>> data;
+        if (loadOptions.compiledCache) {
+            data = SuccCompiledCache.load(Paths.get(filePath), this, recorder);
+        } else {
+            try (Reader succ = openSavedText(recorder)) {
+                data = DataConverter.dataStructureFromSUCC(succ, this);
+            }
+        }
+        synchronized (this) {
+            replayedJournalSize = SuccJournal.replay(journalPath(), data, this, true);
+        }
+        fingerprint.update(attributes, recorder);
+        if (_autoReload.get()) {
+            fingerprint.get();
+        }
+        return data;
+    }
+
+    // The top-level keys that have been changed since the last save, and can be saved by appending them to the journal.
+    // If anything else was changed since then, the whole file has to be saved instead.
+    private final Set<String> journalKeys = new LinkedHashSet<>();
+    private long journalTrackedModifications = 0;
+    private boolean untrackedChanges = false;
+    private long journalSize = 0;
+    private long journalStarted = 0;
+    // The size of the journal that parseSavedData replayed, until the data it was replayed onto is swapped in.
+    private long replayedJournalSize = 0;
+
+    private Path journalPath() {
+        return SuccJournal.pathFor(Paths.get(filePath));
+    }
+
+    @Override
+    protected synchronized void topLevelKeyChanged(String key, long modificationsBefore) {
+        if (modificationsBefore != journalTrackedModifications) {
+            untrackedChanges = true;
+        }
+        journalKeys.add(key);
+        journalTrackedModifications = getModificationCount();
+    }
+
+    // The journal is compacted once it is old enough even if nothing is saved after that, so it can't keep changes for longer than that.
+    private void compactJournalLater(long delayMillis) {
+        long started = journalStarted;
+        runLater(() -> compactJournal(started), delayMillis);
+    }
+
+    private synchronized void compactJournal(long started) {
+        if (journalSize == 0 || journalStarted != started) {
+            return; // compacted already, and maybe started again since, with its own compaction scheduled
+        }
+
+        long modifications = getModificationCount();
+        saveWholeFile();
+        markSaved(modifications);
+    }
+
+    private boolean canJournalChanges() {
+        return !untrackedChanges && !journalKeys.isEmpty() && getModificationCount() == journalTrackedModifications;
+    }
+
+    private void resetJournalTracking(long modifications) {
+        journalKeys.clear();
+        untrackedChanges = false;
+        journalTrackedModifications = modifications;
+    }
+
+    /**
+     * Called once the whole file has been saved, as it was when {@link #getModificationCount()} was the given count.
+     * Everything in the journal is in the file now, so the journal isn't needed anymore.
+     * @return The size and last modified time of the file after the save, or null if there is no file.
+     */
+    synchronized BasicFileAttributes fullSaveFinished(long modifications, SuccFileSaver.PendingWrite write) throws IOException {
+        SuccJournal.delete(journalPath(), saveOptions.durability);
+        // the fingerprint is taken from the bytes that were written, rather than by reading the file back
+        BasicFileAttributes attributes = fingerprint.attributes();
+        fingerprint.update(attributes, write != null ? write.recorder() : null);
+        if (_autoReload.get()) {
+            fingerprint.get();
+        }
+        journalSize = 0;
+        resetJournalTracking(modifications);
+        return attributes;
+    }
+
+    /**
+     * Writes text to the file without syncing it or, for an atomic save, moving it into place. {@link SaveCoordinator} does that itself.
+     */
+    SuccFileSaver.PendingWrite startSave(String text) throws IOException {
+        SuccFileSaver.PendingWrite write = SuccFileSaver.write(Paths.get(filePath), saveOptions, writer -> {
+            writer.write(text);
+            writer.write(System.lineSeparator());
+        });
+        if (write != null) {
+            ignoreNextFileReload.set(true);
+        }
+        layout = null;
+        return write;
+    }
+
+    private void save(SuccFileSaver.Contents contents) {
+        try {
+            long modifications = getModificationCount();
+            layout = null; // in case the save fails half way
+            SuccFileSaver.PendingWrite write = SuccFileSaver.save(Paths.get(filePath), saveOptions, contents);
+            if (write != null) {
+                ignoreNextFileReload.set(true);
+            }
+            BasicFileAttributes attributes = fullSaveFinished(modifications, write);
+            if (contents instanceof SavedLayout.Contents) {
+                SavedLayout saved = ((SavedLayout.Contents) contents).result();
+                layout = saved != null ? saved.savedAs(attributes) : null;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing file " + filePath, e);
+        }
     }
 
     //the following code is copied between DataFile and ReadOnlyDataFile
     private final String filePath;
     private final AtomicBoolean _autoReload = new AtomicBoolean(false);
     protected final AtomicBoolean ignoreNextFileReload = new AtomicBoolean();
+    private final FingerprintTracker fingerprint;
     public Runnable onAutoReload = () -> {
         if (!_autoReload.get()) {
             return;
@@ -90,10 +318,21 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
             ignoreNextFileReload.set(false);
             return;
         }
+        if (!fileChangedSinceLoaded()) {
+            return;
+        }
         reloadAllData();
-        onAutoReload().run();
     };
 
+    private boolean fileChangedSinceLoaded() {
+        return fingerprint.fileChanged();
+    }
+
+    @Override
+    public FileFingerprint getFingerprint() {
+        return fingerprint.get();
+    }
+
     @Override
     public String getFilePath() {
         return filePath;
@@ -115,22 +354,27 @@ public class DataFile extends ReadableWritableDataFile implements IDataFileOnDis
     }
 
     @Override
-    public void setAutoReload(boolean value) {
-        _autoReload.set(value);
-        //TODO Watcher.EnableRaisingEvents = value;
-
+    public synchronized void setAutoReload(boolean value) {
+        boolean wasOn = _autoReload.getAndSet(value);
         if (value) {
             ignoreNextFileReload.set(false);
         }
+
+        // the file is only watched while auto reload is on, so that files that don't use it don't take up any watches
+        if (value && !wasOn) {
+            fingerprint.get(); // taken now, while the file most likely still is the way it was loaded
+            setupWatcher();
+        } else if (!value && wasOn) {
+            CustomFileWatcher.removeCallback(getFilePath(), fileChangedCallback);
+        }
     }
 
+    // onAutoReload can be replaced at any time, so the watcher is given this instead of it
+    private final Runnable fileChangedCallback = () -> onAutoReload.run();
+
     protected void setupWatcher() {
-        Path path = Paths.get(getFilePath());
         try {
-            WatchService watchService = path.getParent().getFileSystem().newWatchService();
-            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
-            CustomFileWatcher watcher = new CustomFileWatcher(watchService);
-            watcher.addCallback(getFilePath(), onAutoReload);
+            CustomFileWatcher.addCallback(getFilePath(), fileChangedCallback);
         } catch (IOException e) {
             throw new RuntimeException("Error while initializing SUCC file watcher: ", e);
         }
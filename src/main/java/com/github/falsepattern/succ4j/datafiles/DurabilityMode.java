@@ -0,0 +1,23 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+/**
+ * Different options for how sure a save is to survive a crash or power loss once it is done.
+ * The further down the list, the safer the save, and the slower it is.
+ */
+public enum DurabilityMode {
+    /**
+     * The operating system writes the file to the disk whenever it gets around to it.
+     */
+    none,
+
+    /**
+     * The contents of the file are forced to the disk before the save is done.
+     */
+    fsync_data,
+
+    /**
+     * The contents of the file are forced to the disk, and so is the directory it is in, so that a newly created or renamed file
+     * is sure to be found under its name. Not every platform can do this for directories; where it can't, this is the same as fsync_data.
+     */
+    fsync_data_and_dir
+}
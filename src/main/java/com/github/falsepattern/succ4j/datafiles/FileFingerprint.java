@@ -0,0 +1,184 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The size, last modified time and CRC32 of a file at some point in time.
+ * Files on disk remember the fingerprint of their file as it was when they last loaded or saved it, so they can tell whether it has really
+ * changed since then. It also works as a cheap ETag: if the fingerprint of a file is the same as before, so is its data.
+ */
+public final class FileFingerprint {
+    /**
+     * The size of the file, in bytes.
+     */
+    public final long size;
+
+    /**
+     * When the file was last modified, in milliseconds since the epoch.
+     */
+    public final long lastModified;
+
+    /**
+     * The CRC32 of the contents of the file.
+     */
+    public final long crc;
+
+    public FileFingerprint(long size, long lastModified, long crc) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.crc = crc;
+    }
+
+    /**
+     * Reads a file and takes its fingerprint.
+     * @return The fingerprint, or null if there is no file at the path.
+     */
+    public static FileFingerprint of(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024); // CRC32 reads direct buffers without copying them
+            long size = 0;
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                size += read;
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            return new FileFingerprint(size, lastModified, crc.getValue());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Takes the fingerprint of a file from the bytes that are read from it or written to it anyway, so that it doesn't have to be read again.
+     */
+    static final class Recorder {
+        private final CRC32 crc = new CRC32();
+        private long size = 0;
+
+        void update(int b) {
+            crc.update(b);
+            size++;
+        }
+
+        void update(byte[] bytes, int offset, int length) {
+            crc.update(bytes, offset, length);
+            size += length;
+        }
+
+        /**
+         * How many bytes were recorded.
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * The CRC32 of the bytes that were recorded.
+         */
+        long crc() {
+            return crc.getValue();
+        }
+
+        /**
+         * @param lastModified When the file was last modified, in milliseconds since the epoch.
+         */
+        FileFingerprint finish(long lastModified) {
+            return new FileFingerprint(size, lastModified, crc.getValue());
+        }
+
+        /**
+         * Records every byte that is read through the stream.
+         */
+        InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        update(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        update(b, off, read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) {
+                    return 0; // skipped bytes couldn't be recorded
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Records every byte that is written through the stream.
+         */
+        OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    update(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    update(b, off, len);
+                }
+            };
+        }
+    }
+
+    /**
+     * Whether the file had the same contents when both fingerprints were taken, even if it was modified (or just touched) in between.
+     */
+    public boolean hasSameContents(FileFingerprint other) {
+        return other != null && size == other.size && crc == other.crc;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FileFingerprint)) {
+            return false;
+        }
+        FileFingerprint other = (FileFingerprint) obj;
+        return size == other.size && lastModified == other.lastModified && crc == other.crc;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) * 31 * 31 + Long.hashCode(lastModified) * 31 + Long.hashCode(crc);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "-" + Long.toHexString(crc);
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Keeps track of the fingerprint of a file as it was when it was last loaded or saved, without reading the file just for that.
+ * <p>
+ * When all the bytes of the file went through a {@link FileFingerprint.Recorder} while it was loaded or saved, the fingerprint is taken from them.
+ * When they didn't, only the size and last modified time of the file are noted, and the fingerprint is taken the first time something needs it,
+ * which is only auto reload and {@link DataFile#getFingerprint()}. If the file has a different size or last modified time by then,
+ * the fingerprint isn't known, and auto reload treats every change of the file as a real one.
+ */
+final class FingerprintTracker {
+    private final Path path;
+    private FileFingerprint fingerprint = null;
+    private BasicFileAttributes unread = null; // the file as it was, if its fingerprint hasn't been taken yet
+
+    FingerprintTracker(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * The size and last modified time of the file right now. Taken before a file is read, so that if it changes while it's being read,
+     * the next change is never mistaken for no change.
+     * @return null if there is no file.
+     */
+    BasicFileAttributes attributes() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Called after the file was loaded or saved.
+     * @param attributes What {@link #attributes()} returned before the file was read, or after it was written.
+     * @param recorder What the bytes were recorded with, or null if they weren't. Only used if it saw as many bytes as the file has.
+     */
+    synchronized void update(BasicFileAttributes attributes, FileFingerprint.Recorder recorder) {
+        if (attributes == null) {
+            fingerprint = null;
+            unread = null;
+        } else if (recorder != null && recorder.size() == attributes.size()) {
+            fingerprint = recorder.finish(attributes.lastModifiedTime().toMillis());
+            unread = null;
+        } else {
+            fingerprint = null;
+            unread = attributes;
+        }
+    }
+
+    /**
+     * @return The fingerprint, or null if it isn't known.
+     */
+    synchronized FileFingerprint get() {
+        if (unread == null) {
+            return fingerprint;
+        }
+
+        BasicFileAttributes then = unread;
+        unread = null; // whatever happens, there's no point in trying again
+        try {
+            BasicFileAttributes now = attributes();
+            if (now != null && sameSizeAndTime(then, now)) {
+                FileFingerprint current = FileFingerprint.of(path);
+                if (current != null && current.size == then.size() && current.lastModified == then.lastModifiedTime().toMillis()) {
+                    fingerprint = current;
+                }
+            }
+        } catch (IOException ignored) {} // not knowing the fingerprint only means auto reload can't skip anything
+        return fingerprint;
+    }
+
+    /**
+     * Whether the contents of the file are different from when it was last loaded or saved.
+     * Touching the file, or saving it without changing anything, doesn't count.
+     */
+    boolean fileChanged() {
+        FileFingerprint loaded = get();
+        if (loaded == null) {
+            return true;
+        }
+        try {
+            FileFingerprint current = FileFingerprint.of(path);
+            if (loaded.hasSameContents(current)) {
+                synchronized (this) {
+                    fingerprint = current;
+                    unread = null;
+                }
+                return false;
+            }
+        } catch (IOException ignored) {} // if the file can't be read, neither can a reload, which reports the problem itself
+        return true;
+    }
+
+    private static boolean sameSizeAndTime(BasicFileAttributes a, BasicFileAttributes b) {
+        return a.size() == b.size() && a.lastModifiedTime().equals(b.lastModifiedTime());
+    }
+}
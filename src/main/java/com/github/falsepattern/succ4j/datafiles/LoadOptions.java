@@ -0,0 +1,69 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rules for how a SUCC file is read from wherever it is stored.
+ * These never change the data that ends up being loaded, only how fast it gets there and how much memory it takes.
+ */
+public class LoadOptions {
+
+    /**
+     * If you do not specify LoadOptions for your file, these will be used.
+     */
+    public static LoadOptions defaultOptions = new LoadOptions();
+
+    /**
+     * Creates a new set of LoadOptions.
+     */
+    public LoadOptions() {}
+
+    /**
+     * If this is true, a {@link ReadOnlyDataFile} maps its file into memory and parses the UTF-8 bytes directly,
+     * instead of reading the file through a stream. This is faster for large files, and the file's contents never sit on the heap twice.
+     * Every line is still decoded into text on the heap while the file loads, the same as without this option;
+     * the mapping is let go of right after, so that the file can be changed or replaced while it is in use.
+     * Files larger than 2GB are always read through a stream.
+     */
+    public boolean memoryMapped = false;
+
+    /**
+     * If this is true, loading a file only parses its top-level lines. Everything nested under a top-level key is kept as raw text,
+     * and only parsed the first time something reads or changes that key.
+     * Loading gets a lot faster when only a few keys of a large file are used, but format errors inside a key are only found when it is first used.
+     */
+    public boolean lazy = false;
+
+    /**
+     * If this is true, the top-level sections of a file are parsed at the same time on a fork/join pool.
+     * The loaded data is exactly the same as with a regular load. This has no effect if {@link #lazy} is true.
+     */
+    public boolean parallel = false;
+
+    /**
+     * Files with fewer lines than this are always parsed on the calling thread, even if {@link #parallel} is true.
+     */
+    public int parallelThreshold = 20000;
+
+    /**
+     * The pool that parallel parsing runs on. If this is null, the common pool is used.
+     */
+    public ForkJoinPool parallelPool = null;
+
+    /**
+     * If this is true, {@link DataFile}s and {@link ReadOnlyDataFile}s keep a compiled cache next to their file, with a "c" added to its name.
+     * The cache remembers how the file was parsed, so the next load only has to read the file instead of parsing it again.
+     * If the file has changed since the cache was made, it is parsed as usual and the cache is made again.
+     * Files loaded from the cache are always loaded whole, so {@link #lazy}, {@link #parallel} and {@link #memoryMapped} have no effect when it's used.
+     */
+    public boolean compiledCache = false;
+
+    /**
+     * If this is true, a {@link ReadOnlyDataFile} keeps an index next to its file, with an "i" added to its name.
+     * Loading the file then only reads its top-level lines from the index, and the lines nested under a top-level key are read from the file
+     * and parsed the first time that key is used. This makes reading a few keys out of a huge file a lot faster, and keeps memory use low.
+     * If the size or last modified time of the file has changed since the index was made, the whole file is parsed once to make it again.
+     * This takes precedence over all the other options.
+     */
+    public boolean indexed = false;
+}
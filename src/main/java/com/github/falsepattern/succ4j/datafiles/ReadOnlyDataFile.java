@@ -2,14 +2,28 @@ package com.github.falsepattern.succ4j.datafiles;
 
 import com.github.falsepattern.util.CustomFileWatcher;
 import com.github.falsepattern.util.FalseUtil;
+import com.github.falsepattern.util.Pair;
 import com.github.falsepattern.succ4j.Utilities;
 import com.github.falsepattern.succ4j.datafiles.abstractions.IDataFileOnDisk;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -30,12 +44,23 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
      * @param path The path of the file. Can be either absolute or relative to the default path.
      * @param defaultFileText If there isn't already a file at the path, one can be created from the text supplied here.
      */
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public ReadOnlyDataFile(String path, String defaultFileText) {
-        super(defaultFileText);
+        this(path, defaultFileText, LoadOptions.defaultOptions);
+    }
+
+    /**
+     * Creates a new ReadOnlyDataFile object corresponding to a SUCC file in system storage.
+     * @param path The path of the file. Can be either absolute or relative to the default path.
+     * @param defaultFileText If there isn't already a file at the path, one can be created from the text supplied here.
+     * @param loadOptions Rules for how the file is read from disk.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public ReadOnlyDataFile(String path, String defaultFileText, LoadOptions loadOptions) {
+        super(defaultFileText, loadOptions);
         path = Utilities.absolutePath(path);
         path = FalseUtil.changeExtension(path, Utilities.fileExtension);
         this.filePath = path;
+        this.fingerprint = new FingerprintTracker(Paths.get(path));
 
         try {
             if (!Utilities.succFileExists(path)) {
@@ -51,8 +76,6 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
         }
 
         this.reloadAllData();
-
-        setupWatcher();
     }
 
     @Override
@@ -60,7 +83,7 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
         Path path = Paths.get(filePath);
         if (Files.exists(path)) {
             try {
-                return new String(Files.readAllBytes(path));
+                return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
             } catch (IOException e) {
                 throw new RuntimeException("Error reading file " + path, e);
             }
@@ -69,10 +92,66 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
         return "";
     }
 
+    @Override
+    protected Reader openSavedText() throws IOException {
+        return openSavedText(null);
+    }
+
+    private Reader openSavedText(FileFingerprint.Recorder recorder) throws IOException {
+        Path path = Paths.get(filePath);
+        if (Files.exists(path)) {
+            InputStream in = Files.newInputStream(path);
+            return new InputStreamReader(recorder != null ? recorder.wrap(in) : in, StandardCharsets.UTF_8);
+        }
+
+        return new StringReader("");
+    }
+
+    @Override
+    protected Pair<List<Line>, Map<String, KeyNode>> parseSavedData() throws IOException {
+        // the fingerprint is taken from the bytes as they are parsed, so the file doesn't have to be read twice.
+        // Indexed and memory mapped files don't go through the recorder, so theirs is only taken if something needs it.
+        BasicFileAttributes attributes = fingerprint.attributes();
+        FileFingerprint.Recorder recorder = new FileFingerprint.Recorder();
+        Pair<List<Line>, Map<String, KeyNode>> data = parseFile(recorder);
+        SuccJournal.replay(SuccJournal.pathFor(Paths.get(filePath)), data, this, false); // a DataFile may have changes in its journal
+        fingerprint.update(attributes, recorder);
+        if (_autoReload.get()) {
+            fingerprint.get();
+        }
+        return data;
+    }
+
+    private Pair<List<Line>, Map<String, KeyNode>> parseFile(FileFingerprint.Recorder recorder) throws IOException {
+        Path path = Paths.get(filePath);
+        if (loadOptions.indexed) {
+            return SuccIndex.load(path, this);
+        }
+        if (loadOptions.compiledCache) {
+            return SuccCompiledCache.load(path, this, recorder);
+        }
+        if (!loadOptions.memoryMapped || !Files.exists(path)) {
+            try (Reader succ = openSavedText(recorder)) {
+                return DataConverter.dataStructureFromSUCC(succ, this);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) { // too big to map in one piece
+                return super.parseSavedData();
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return DataConverter.dataStructureFromSUCC(mapped, this);
+        }
+    }
+
     //the following code is copied between DataFile and ReadOnlyDataFile
     private final String filePath;
     private final AtomicBoolean _autoReload = new AtomicBoolean(false);
     protected final AtomicBoolean ignoreNextFileReload = new AtomicBoolean();
+    private final FingerprintTracker fingerprint;
     public Runnable onAutoReload = () -> {
         if (!_autoReload.get()) {
             return;
@@ -82,10 +161,21 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
             ignoreNextFileReload.set(false);
             return;
         }
+        if (!fileChangedSinceLoaded()) {
+            return;
+        }
         reloadAllData();
-        onAutoReload().run();
     };
 
+    private boolean fileChangedSinceLoaded() {
+        return fingerprint.fileChanged();
+    }
+
+    @Override
+    public FileFingerprint getFingerprint() {
+        return fingerprint.get();
+    }
+
     @Override
     public String getFilePath() {
         return filePath;
@@ -107,22 +197,27 @@ public class ReadOnlyDataFile extends ReadableDataFile implements IDataFileOnDis
     }
 
     @Override
-    public void setAutoReload(boolean value) {
-        _autoReload.set(value);
-        //TODO Watcher.EnableRaisingEvents = value;
-
+    public synchronized void setAutoReload(boolean value) {
+        boolean wasOn = _autoReload.getAndSet(value);
         if (value) {
             ignoreNextFileReload.set(false);
         }
+
+        // the file is only watched while auto reload is on, so that files that don't use it don't take up any watches
+        if (value && !wasOn) {
+            fingerprint.get(); // taken now, while the file most likely still is the way it was loaded
+            setupWatcher();
+        } else if (!value && wasOn) {
+            CustomFileWatcher.removeCallback(getFilePath(), fileChangedCallback);
+        }
     }
 
+    // onAutoReload can be replaced at any time, so the watcher is given this instead of it
+    private final Runnable fileChangedCallback = () -> onAutoReload.run();
+
     protected void setupWatcher() {
-        Path path = Paths.get(getFilePath());
         try {
-            WatchService watchService = path.getParent().getFileSystem().newWatchService();
-            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
-            CustomFileWatcher watcher = new CustomFileWatcher(watchService);
-            watcher.addCallback(getFilePath(), onAutoReload);
+            CustomFileWatcher.addCallback(getFilePath(), fileChangedCallback);
         } catch (IOException e) {
             throw new RuntimeException("Error while initializing SUCC file watcher: ", e);
         }
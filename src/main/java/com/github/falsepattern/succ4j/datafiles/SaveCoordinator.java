@@ -0,0 +1,207 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Saves many files together, so that they share the cost of making their saves durable, the same way a database commits a group of
+ * transactions at once.
+ * <p>
+ * Each call to {@link #saveChanges()} is one round, or "tick". All the files added to the coordinator that have unsaved changes are rendered
+ * and written in parallel, without syncing anything. Then all of them are synced at once, atomic saves are moved into place, and every
+ * directory that has to be synced is synced only once, no matter how many of the files are in it.
+ * <p>
+ * Files saved by a coordinator should have {@link ReadableWritableDataFile#autoSave} turned off, so that they aren't also saved on their own.
+ * Files that aren't {@link DataFile}s are simply saved with {@link ReadableWritableDataFile#saveAllData()}.
+ */
+public class SaveCoordinator {
+    private final Executor executor;
+    private final Set<ReadableWritableDataFile> files = ConcurrentHashMap.newKeySet();
+    private CompletableFuture<Void> lastRound = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates a coordinator that does its work on the common fork/join pool.
+     */
+    public SaveCoordinator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a coordinator that does its work on the given executor.
+     */
+    public SaveCoordinator(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a file to the ones this coordinator saves.
+     */
+    public void add(ReadableWritableDataFile file) {
+        files.add(file);
+    }
+
+    /**
+     * Stops this coordinator from saving a file. A round that has already started still saves it.
+     */
+    public void remove(ReadableWritableDataFile file) {
+        files.remove(file);
+    }
+
+    /**
+     * Saves every file of this coordinator that has unsaved changes.
+     * Rounds never overlap: if the last one isn't done yet, this one starts once it is.
+     * @return A future that completes once all the files are saved as durably as their {@link SaveOptions#durability} asks for.
+     * If any of them couldn't be saved, it completes with the error of the first one; those files keep their unsaved changes
+     * for the next round, and all the others are still saved.
+     */
+    public synchronized CompletableFuture<Void> saveChanges() {
+        List<ReadableWritableDataFile> changed = new ArrayList<>();
+        for (ReadableWritableDataFile file : files) {
+            if (file.hasUnsavedChanges()) {
+                changed.add(file);
+            }
+        }
+
+        CompletableFuture<Void> round = lastRound
+                .handle((result, error) -> null) // a round that failed doesn't stop the next one
+                .thenCompose(ignored -> saveRound(changed));
+        lastRound = round;
+        return round;
+    }
+
+    private static class FileSave {
+        final ReadableWritableDataFile file;
+        long modifications;
+        SuccFileSaver.PendingWrite write = null; // null if there was nothing left to do after the file was written
+        Throwable error = null;
+
+        FileSave(ReadableWritableDataFile file) {
+            this.file = file;
+        }
+
+        DurabilityMode durability() {
+            return file.saveOptions.durability;
+        }
+    }
+
+    private CompletableFuture<Void> saveRound(List<ReadableWritableDataFile> changed) {
+        List<FileSave> saves = new ArrayList<>(changed.size());
+        for (ReadableWritableDataFile file : changed) {
+            saves.add(new FileSave(file));
+        }
+
+        return forEach(saves, SaveCoordinator::write)
+                .thenCompose(ignored -> forEach(saves, save -> {
+                    if (save.write != null) {
+                        run(save, () -> save.write.sync(save.durability()));
+                    }
+                }))
+                .thenCompose(ignored -> forEach(saves, save -> {
+                    if (save.write != null) {
+                        run(save, save.write::finish);
+                    }
+                }))
+                .thenCompose(ignored -> syncDirectories(saves))
+                .thenCompose(ignored -> forEach(saves, save -> {
+                    if (save.file instanceof DataFile) {
+                        run(save, () -> ((DataFile) save.file).fullSaveFinished(save.modifications, save.write));
+                    }
+                }))
+                .thenApply(ignored -> {
+                    Throwable error = null;
+                    for (FileSave save : saves) {
+                        if (save.error == null) {
+                            save.file.markSaved(save.modifications);
+                        } else if (error == null) {
+                            error = save.error;
+                        } else {
+                            error.addSuppressed(save.error);
+                        }
+                    }
+
+                    if (error instanceof RuntimeException) {
+                        throw (RuntimeException) error;
+                    } else if (error instanceof Error) {
+                        throw (Error) error;
+                    } else if (error != null) {
+                        throw new RuntimeException("Error while saving files", error);
+                    }
+                    return null;
+                });
+    }
+
+    private static void write(FileSave save) {
+        ReadableWritableDataFile file = save.file;
+        if (!(file instanceof DataFile)) {
+            try {
+                save.modifications = file.getModificationCount(); // saveAllData already remembers this itself
+                file.saveAllData();
+            } catch (RuntimeException | Error e) {
+                save.error = e;
+            }
+            return;
+        }
+
+        String text;
+        synchronized (file) {
+            save.modifications = file.getModificationCount();
+            text = file.getRawText();
+        }
+        run(save, () -> save.write = ((DataFile) file).startSave(text));
+    }
+
+    private CompletableFuture<Void> syncDirectories(List<FileSave> saves) {
+        Map<Path, FileSave> directories = new LinkedHashMap<>();
+        for (FileSave save : saves) {
+            if (save.write != null && save.error == null && save.durability() == DurabilityMode.fsync_data_and_dir) {
+                directories.putIfAbsent(save.write.path.toAbsolutePath().getParent(), save);
+            }
+        }
+        return forEach(directories.values(), save -> SuccFileSaver.forceDirectory(save.write.path, DurabilityMode.fsync_data_and_dir));
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static void run(FileSave save, IOAction action) {
+        if (save.error != null) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (IOException e) {
+            save.error = new RuntimeException("Error while writing file " + save.file.getIdentifier(), e);
+            if (save.write != null) {
+                save.write.abandon();
+            }
+        } catch (RuntimeException | Error e) {
+            save.error = e;
+            if (save.write != null) {
+                save.write.abandon();
+            }
+        }
+    }
+
+    private <T> CompletableFuture<Void> forEach(Collection<T> items, Consumer<T> action) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[items.size()];
+        int i = 0;
+        for (T item : items) {
+            futures[i++] = CompletableFuture.runAsync(() -> action.accept(item), executor);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+/**
+ * Rules for how and when a SUCC file is written to wherever it is stored.
+ * These never change the text that ends up being saved, only when and how it gets written.
+ */
+public class SaveOptions {
+
+    /**
+     * If you do not specify SaveOptions for your file, these will be used.
+     */
+    public static SaveOptions defaultOptions = new SaveOptions();
+
+    /**
+     * Creates a new set of SaveOptions.
+     */
+    public SaveOptions() {}
+
+    /**
+     * If this is true, autosave doesn't write the file after every change. Changes are collected instead, and written all at once
+     * by a background thread when no more changes have come in for {@link #writeBehindQuietMillis}, or when the first unsaved change is
+     * {@link #writeBehindMaxDelayMillis} old, whichever comes first.
+     * Call flush() or close() on the file to write pending changes right away. Pending changes are also written when the JVM shuts down normally.
+     * If a save on the background thread fails, the changes stay unsaved, and the failure is thrown from the next flush() or close().
+     */
+    public boolean writeBehind = false;
+
+    /**
+     * How long a file has to go without changes before write-behind autosave writes it, in milliseconds.
+     */
+    public long writeBehindQuietMillis = 500;
+
+    /**
+     * The longest a change can wait to be written by write-behind autosave, in milliseconds, even if the file keeps changing.
+     */
+    public long writeBehindMaxDelayMillis = 5000;
+
+    /**
+     * How files on disk are written when they are saved.
+     */
+    public SaveStrategy saveStrategy = SaveStrategy.rewrite;
+
+    /**
+     * How sure a save is to have reached the disk once it is done.
+     */
+    public DurabilityMode durability = DurabilityMode.none;
+
+    /**
+     * If this is true, a {@link DataFile} saves changes made with set, setAtPath and deleteKey by appending them to a journal next to it
+     * (named like the file, with ".journal" added), rather than writing the whole file. The cost of a save then depends on the size of
+     * the top-level keys that changed, not the size of the file.
+     * The journal is replayed over the file whenever the file is loaded, and it is compacted into the file, which stays the source of truth,
+     * once it is {@link #journalCompactionBytes} big or {@link #journalCompactionMillis} old. Any other kind of change is saved to the file
+     * directly, which compacts the journal too. Auto-reload only sees changes in other programs once they have been compacted into the file.
+     */
+    public boolean journal = false;
+
+    /**
+     * How big the journal can get, in bytes, before it is compacted into the file.
+     */
+    public long journalCompactionBytes = 1024 * 1024;
+
+    /**
+     * How long the journal can keep changes, in milliseconds, before they are compacted into the file.
+     * This happens on the write-behind thread once the time is up, even if nothing is saved after that.
+     */
+    public long journalCompactionMillis = 60_000;
+}
@@ -0,0 +1,32 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+/**
+ * Different options for how a file on disk is written when it is saved.
+ */
+public enum SaveStrategy {
+    /**
+     * The whole file is written again, in place. If the program or the computer crashes in the middle of it, the file can be left cut off.
+     */
+    rewrite,
+
+    /**
+     * Only the top-level keys that changed since the last save are written, in place, at the offset they were saved at.
+     * The changed keys are found from what was changed through the file, so nothing is read from the file, and nothing else is rendered.
+     * A change that keeps the length of the keys the same, like a counter going from 10 to 11, writes only those keys.
+     * A change that makes them longer or shorter writes everything from the first changed key to the end of the file, in place.
+     * With a {@link DurabilityMode} other than none, that part is written to a new file that replaces the old one the same way as
+     * {@link #atomic} instead, and the part in front of it is copied from the old file by the operating system, so such a save costs
+     * as much I/O as the size of the whole file, even if only the end of it changed.
+     * The first save after the file is loaded writes the whole file, and so does a save after something else changed the file,
+     * which is noticed from its size and last modified time.
+     * If the file can't be patched, it is replaced the same way as with {@link #atomic}.
+     * If the program or computer crashes in the middle of a patch, the file can be left with a mix of the old and new text.
+     */
+    patch,
+
+    /**
+     * The whole file is written to a temporary file in the same directory, which is then moved over the old one in one step.
+     * Even if the program or the computer crashes in the middle of a save, the file has either all of the old text or all of the new text.
+     */
+    atomic
+}
@@ -0,0 +1,299 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import com.github.falsepattern.succ4j.Utilities;
+import com.github.falsepattern.succ4j.parsinglogic.SuccWriter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where each top-level line of a {@link DataFile} is in the file on disk, as it was last saved, for {@link SaveStrategy#patch}.
+ * <p>
+ * The next patch save compares the top-level lines of the file with the ones that were saved. A line counts as unchanged if it is the same
+ * object as before, and, for a node, nothing in it has changed since the save, which {@link Node#getLastModification()} tells. That way,
+ * the changed lines are found without rendering or reading anything. Only the changed lines are rendered, and if they take up as many bytes
+ * as before, they are written in place at the offset they were saved at. If they don't, the rest of the text from the first changed line on
+ * is written again, see {@link SaveStrategy#patch}.
+ * <p>
+ * All of this only works if nothing else changed the file since it was saved. That is checked from its size and last modified time,
+ * which are noted after every save, since checking its contents would mean reading all of it.
+ */
+final class SavedLayout {
+    private final Line[] lines; // the top-level lines that were saved
+    private final long[] offsets; // where each line starts in the file, and at the end, where the text ends before its whitespace is cut off
+    private final boolean[] visible; // whether each line has anything but whitespace in it
+    private final long size; // the size of the file right after the save
+    private final long modification; // the modification count of the file when it was saved
+    private final String newLine;
+    private final FileTime lastModified; // the last modified time of the file right after the save, or null if it isn't known yet
+
+    private SavedLayout(Line[] lines, long[] offsets, boolean[] visible, long size, long modification, String newLine, FileTime lastModified) {
+        this.lines = lines;
+        this.offsets = offsets;
+        this.visible = visible;
+        this.size = size;
+        this.modification = modification;
+        this.newLine = newLine;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * This layout, noting what the file was like right after it was saved.
+     * @return null if the file doesn't have the size the layout says, so something else already changed it.
+     */
+    SavedLayout savedAs(BasicFileAttributes attributes) {
+        if (attributes == null || attributes.size() != size) {
+            return null;
+        }
+        return new SavedLayout(lines, offsets, visible, size, modification, newLine, attributes.lastModifiedTime());
+    }
+
+    /**
+     * Whether the file still is the way it was right after the save, so that it can be patched.
+     * @param attributes The file as it is now, or null if it doesn't exist.
+     */
+    boolean matches(BasicFileAttributes attributes) {
+        return attributes != null && lastModified != null && attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+    }
+
+    /**
+     * The text of a file, as a patch save writes it. Any time the whole text is written, where its lines are is noted,
+     * and if the file was last saved by one of these too, only the lines that changed since are written.
+     */
+    static final class Contents implements SuccFileSaver.PatchableContents {
+        private final SavedLayout previous;
+        private final List<Line> lines;
+        private final long modification;
+        private int tailLine = 0; // the first line that writeTail writes
+        private SavedLayout result = null;
+
+        /**
+         * @param previous The layout of the last save, or null if the file wasn't saved with a patch save since it was loaded.
+         * @param modification The modification count of the file, taken before it is saved.
+         */
+        Contents(SavedLayout previous, List<Line> lines, long modification) {
+            this.previous = previous;
+            this.lines = lines;
+            this.modification = modification;
+        }
+
+        @Override
+        public void writeTo(Writer writer) throws IOException {
+            Line[] saved = lines.toArray(new Line[0]);
+            long[] offsets = new long[saved.length + 1];
+            boolean[] visible = new boolean[saved.length];
+            CountingWriter counter = new CountingWriter(writer);
+            render(counter, saved, 0, 0, offsets, visible);
+            result = new SavedLayout(saved, offsets, visible, counter.bytes, modification, Utilities.getNewLine(), null);
+        }
+
+        @Override
+        public SuccFileSaver.PatchResult patch(FileChannel channel) throws IOException {
+            if (previous == null || channel.size() != previous.size || !previous.newLine.equals(Utilities.getNewLine())) {
+                return SuccFileSaver.PatchResult.unpatchable; // never saved like this, changed by something else, or it would look different now
+            }
+
+            Line[] old = previous.lines;
+            int n = lines.size();
+            int m = old.length;
+            int first = 0;
+            while (first < n && first < m && previous.unchanged(lines.get(first), old[first])) {
+                first++;
+            }
+            if (first == n && n == m) {
+                result = previous;
+                return SuccFileSaver.PatchResult.unchanged;
+            }
+            int same = 0; // how many lines at the end are unchanged
+            while (same < n - first && same < m - first && previous.unchanged(lines.get(n - 1 - same), old[m - 1 - same])) {
+                same++;
+            }
+
+            // If there is something visible after the changed lines, the whitespace at the end of the text stays the same,
+            // and the changed lines can be written by themselves, if they have the same length as before.
+            if (same > 0 && previous.lastVisible() >= m - same) {
+                Line[] saved = lines.toArray(new Line[0]);
+                long[] offsets = new long[n + 1];
+                boolean[] visible = new boolean[n];
+                System.arraycopy(previous.offsets, 0, offsets, 0, first + 1);
+                System.arraycopy(previous.visible, 0, visible, 0, first);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CountingWriter counter = new CountingWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+                SuccWriter succ = new SuccWriter(counter);
+                renderLines(succ, counter, saved, first, n - same, previous.offsets[first], offsets, visible);
+                succ.writeHeldBackWhitespace();
+                counter.flush();
+
+                if (bytes.size() == previous.offsets[m - same] - previous.offsets[first]) {
+                    writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), previous.offsets[first]);
+                    System.arraycopy(previous.offsets, m - same, offsets, n - same, same + 1);
+                    System.arraycopy(previous.visible, m - same, visible, n - same, same);
+                    result = new SavedLayout(saved, offsets, visible, previous.size, modification, previous.newLine, null);
+                    return SuccFileSaver.PatchResult.patched;
+                }
+            }
+
+            // The rest of the file is written again, from the last visible line in front of the changed ones, because the whitespace
+            // after that line was only written if there was something visible after it, which might not be the case anymore.
+            tailLine = first;
+            do {
+                tailLine--;
+            } while (tailLine >= 0 && !previous.visible[tailLine]);
+            tailLine = Math.max(tailLine, 0);
+            return SuccFileSaver.PatchResult.replace_tail;
+        }
+
+        @Override
+        public long tailStart() {
+            return previous.offsets[tailLine];
+        }
+
+        @Override
+        public void writeTail(OutputStream out) throws IOException {
+            Line[] saved = lines.toArray(new Line[0]);
+            long[] offsets = new long[saved.length + 1];
+            boolean[] visible = new boolean[saved.length];
+            System.arraycopy(previous.offsets, 0, offsets, 0, tailLine + 1);
+            System.arraycopy(previous.visible, 0, visible, 0, tailLine);
+
+            CountingWriter counter = new CountingWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            render(counter, saved, tailLine, offsets[tailLine], offsets, visible);
+            result = new SavedLayout(saved, offsets, visible, offsets[tailLine] + counter.bytes, modification, previous.newLine, null);
+        }
+
+        /**
+         * The layout of the file after the save, or null if nothing has been written yet.
+         */
+        SavedLayout result() {
+            return result;
+        }
+    }
+
+    private boolean unchanged(Line line, Line savedLine) {
+        return line == savedLine && !(line instanceof Node && ((Node) line).getLastModification() > modification);
+    }
+
+    private int lastVisible() {
+        int last = visible.length - 1;
+        while (last >= 0 && !visible[last]) {
+            last--;
+        }
+        return last;
+    }
+
+    /**
+     * Writes the text of a file from one of its lines to the end, the same way {@link DataFile} always saves it:
+     * the lines without the whitespace at the end, and then a line separator.
+     * @param base Where in the file the first of the lines starts.
+     */
+    private static void render(CountingWriter counter, Line[] lines, int from, long base, long[] offsets, boolean[] visible) throws IOException {
+        SuccWriter succ = new SuccWriter(counter);
+        renderLines(succ, counter, lines, from, lines.length, base, offsets, visible);
+        succ.finish();
+        counter.write(System.lineSeparator());
+        counter.flush();
+    }
+
+    /**
+     * Writes some of the lines, and notes where each of them starts, where the last one ends, and which of them have anything visible in them.
+     * @param base Where in the file the first of the lines starts.
+     */
+    private static void renderLines(SuccWriter succ, CountingWriter counter, Line[] lines, int from, int to, long base,
+                                    long[] offsets, boolean[] visible) throws IOException {
+        for (int i = from; i < to; i++) {
+            // whitespace is held back until something visible comes after it, but it still is in front of the line
+            offsets[i] = base + counter.bytes + succ.getHeldBackLength();
+            long before = counter.bytes;
+            succ.writeLines(Collections.singletonList(lines[i]));
+            visible[i] = counter.bytes != before;
+        }
+        offsets[to] = base + counter.bytes + succ.getHeldBackLength();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Counts how many bytes the characters written through it are in UTF-8, the way an {@link OutputStreamWriter} encodes them.
+     */
+    private static final class CountingWriter extends Writer {
+        private final Writer out;
+        long bytes = 0;
+        private boolean highSurrogate = false; // the last character was the first half of a surrogate pair
+
+        CountingWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.write(chars, offset, length);
+            for (int i = offset; i < offset + length; i++) {
+                count(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            for (int i = offset; i < offset + length; i++) {
+                count(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count((char) c);
+        }
+
+        private void count(char c) {
+            if (highSurrogate) {
+                highSurrogate = false;
+                if (Character.isLowSurrogate(c)) {
+                    bytes += 4;
+                    return;
+                }
+                bytes++; // half a surrogate pair is encoded as a question mark
+            }
+
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = true;
+            } else if (Character.isLowSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
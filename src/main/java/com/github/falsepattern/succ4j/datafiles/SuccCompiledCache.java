@@ -0,0 +1,214 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.ListNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.MultiLineStringNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.NodeChildrenType;
+import com.github.falsepattern.util.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled cache of a SUCC file, used when {@link LoadOptions#compiledCache} is on. It is kept next to the file, with a "c" added to its name.
+ * <p>
+ * The cache holds the structure the file was parsed into: what kind each line is, where it starts and ends in the text of the file, and how the
+ * lines are nested. The text itself isn't in the cache, since the lines are just ranges of the file's text anyway. Loading from the cache
+ * still reads the file, but it skips finding, classifying and nesting the lines.
+ * <p>
+ * The cache remembers the size, last modified time and CRC32 of the file it was made from. If any of them don't match the file anymore,
+ * or the cache can't be read, the file is parsed as usual and the cache is made again.
+ */
+final class SuccCompiledCache {
+    private SuccCompiledCache() {}
+
+    private static final int magic = 0x53554343; // "SUCC"
+    private static final int version = 1;
+
+    private static final byte plainLine = 0;
+    private static final byte keyNode = 1;
+    private static final byte listNode = 2;
+    private static final byte multiLineStringNode = 3;
+
+    /**
+     * Where the cache of a file is kept.
+     */
+    static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + "c");
+    }
+
+    /**
+     * Loads a file from its cache, or parses it and makes a new cache if the one there is out of date.
+     * @param recorder Records the bytes of the file, which are read in full either way.
+     */
+    static Pair<List<Line>, Map<String, KeyNode>> load(Path path, ReadableDataFile fileRef, FileFingerprint.Recorder recorder) throws IOException {
+        if (!Files.exists(path)) {
+            return DataConverter.dataStructureFromSUCC("", fileRef);
+        }
+
+        long modified = Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        byte[] bytes = Files.readAllBytes(path);
+        recorder.update(bytes, 0, bytes.length);
+        long crc = recorder.crc();
+        String text = new String(bytes, StandardCharsets.UTF_8);
+
+        Path cachePath = pathFor(path);
+        Pair<List<Line>, Map<String, KeyNode>> data = read(cachePath, bytes.length, modified, crc, text, fileRef);
+        if (data != null) {
+            return data;
+        }
+
+        data = DataConverter.dataStructureFromSUCC(text, fileRef);
+        try {
+            write(cachePath, bytes.length, modified, crc, text, data.key);
+        } catch (IOException ignored) {} // the cache only makes loading faster, so the file loads fine without it
+        return data;
+    }
+
+    /**
+     * @return The data from the cache, or null if it is missing, out of date, or broken.
+     */
+    private static Pair<List<Line>, Map<String, KeyNode>> read(Path cachePath, long size, long modified, long crc, String text, ReadableDataFile fileRef) {
+        byte[] cache;
+        try {
+            cache = Files.readAllBytes(cachePath);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(cache);
+            if (in.getInt() != magic || in.getInt() != version
+                || in.getLong() != size || in.getLong() != modified || in.getLong() != crc || in.getInt() != text.length()) {
+                return null;
+            }
+
+            ReadableWritableDataFile file = fileRef instanceof ReadableWritableDataFile ? (ReadableWritableDataFile) fileRef : null;
+            int count = in.getInt();
+            List<Line> lines = new ArrayList<>(count);
+            Map<String, KeyNode> nodes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Line line = readLine(in, text, file);
+                lines.add(line);
+                if (line instanceof KeyNode) {
+                    KeyNode node = (KeyNode) line;
+                    nodes.put(node.getKey(), node);
+                }
+            }
+
+            if (in.hasRemaining()) {
+                return null;
+            }
+            return new Pair<>(lines, nodes);
+        } catch (RuntimeException e) { // the cache was cut off or garbled, so it is made again
+            return null;
+        }
+    }
+
+    private static Line readLine(ByteBuffer in, String text, ReadableWritableDataFile file) {
+        byte kind = in.get();
+        int start = in.getInt();
+        int end = in.getInt();
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IllegalStateException("Line out of bounds: " + start + " to " + end);
+        }
+
+        Node node;
+        switch (kind) {
+            case plainLine:
+                return new Line(text, start, end);
+            case keyNode:
+                node = new KeyNode(text, start, end, file);
+                break;
+            case listNode:
+                node = new ListNode(text, start, end, file);
+                break;
+            case multiLineStringNode:
+                node = new MultiLineStringNode(text, start, end, file);
+                break;
+            default:
+                throw new IllegalStateException("Unknown kind of line: " + kind);
+        }
+
+        node.childNodeType = NodeChildrenType.values()[in.get()];
+        int children = in.getInt();
+        for (int i = 0; i < children; i++) {
+            node.addLoadedChild(readLine(in, text, file));
+        }
+        return node;
+    }
+
+    private static void write(Path cachePath, long size, long modified, long crc, String text, List<Line> lines) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeLong(crc);
+        out.writeInt(text.length());
+        out.writeInt(lines.size());
+        for (Line line : lines) {
+            if (!writeLine(out, line, text)) {
+                return;
+            }
+        }
+        out.flush();
+
+        // moved over the cache in one go, so that another program loading the same file never sees half a cache
+        SuccFileSaver.writeAtomically(cachePath, bytes.toByteArray());
+    }
+
+    /**
+     * @return false if the line isn't a range of the text, so it can't be cached.
+     */
+    private static boolean writeLine(DataOutputStream out, Line line, String text) throws IOException {
+        if (line.getSource() != text) {
+            return false;
+        }
+
+        byte kind;
+        if (line instanceof MultiLineStringNode) {
+            kind = multiLineStringNode;
+        } else if (line instanceof KeyNode) {
+            kind = keyNode;
+        } else if (line instanceof ListNode) {
+            kind = listNode;
+        } else if (line instanceof Node) {
+            return false;
+        } else {
+            kind = plainLine;
+        }
+
+        out.writeByte(kind);
+        out.writeInt(line.getSourceStart());
+        out.writeInt(line.getSourceEnd());
+        if (line instanceof Node) {
+            Node node = (Node) line;
+            List<Line> children = node.getChildLines();
+            out.writeByte(node.childNodeType.ordinal());
+            out.writeInt(children.size());
+            for (Line child : children) {
+                if (!writeLine(out, child, text)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
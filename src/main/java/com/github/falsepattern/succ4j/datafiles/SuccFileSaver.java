@@ -0,0 +1,308 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Writes the text of a file to disk, the way its {@link SaveOptions} say to.
+ */
+final class SuccFileSaver {
+    private SuccFileSaver() {}
+
+    /**
+     * Writes the text of a file. It is encoded as UTF-8 on its way to the disk.
+     */
+    interface Contents {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Contents that know which parts of them changed since the file was last saved, so that {@link SaveStrategy#patch} only writes those.
+     */
+    interface PatchableContents extends Contents {
+        /**
+         * Writes the parts that changed into the file, if that can be done in place.
+         */
+        PatchResult patch(FileChannel channel) throws IOException;
+
+        /**
+         * After {@link #patch(FileChannel)} returned {@link PatchResult#replace_tail}, where in the file the part that is written again starts.
+         */
+        long tailStart();
+
+        /**
+         * After {@link #patch(FileChannel)} returned {@link PatchResult#replace_tail}, writes the text from {@link #tailStart()} to the end.
+         */
+        void writeTail(OutputStream out) throws IOException;
+    }
+
+    enum PatchResult {
+        /**
+         * Nothing changed, so nothing was written.
+         */
+        unchanged,
+        /**
+         * The changes were written.
+         */
+        patched,
+        /**
+         * The changes can't be written in place, because they don't have the same length as what they replace, and nothing was written.
+         * The file is replaced with one that has the same bytes up to {@link PatchableContents#tailStart()}, and the new text after them.
+         */
+        replace_tail,
+        /**
+         * The changes can't be patched in, and nothing was written. The whole file has to be written instead.
+         */
+        unpatchable
+    }
+
+    /**
+     * Saves a file.
+     * @return The finished save, or null if the file already had exactly the text that was saved, so nothing was written.
+     */
+    static PendingWrite save(Path path, SaveOptions options, Contents contents) throws IOException {
+        PendingWrite write = write(path, options, contents);
+        if (write == null) {
+            return null;
+        }
+        try {
+            write.sync(options.durability);
+            write.finish();
+        } catch (IOException | RuntimeException e) {
+            write.abandon();
+            throw e;
+        }
+        forceDirectory(path, options.durability);
+        return write;
+    }
+
+    /**
+     * The first part of a save: the text is written, but not forced to the disk, and for an atomic save not moved into place yet.
+     * This lets a {@link SaveCoordinator} write many files before it syncs any of them.
+     * @return the rest of the save, or null if the file already had exactly the text that was saved, so nothing was written.
+     */
+    static PendingWrite write(Path path, SaveOptions options, Contents contents) throws IOException {
+        switch (options.saveStrategy) {
+            case patch:
+                if (contents instanceof PatchableContents && Files.exists(path)) {
+                    try {
+                        switch (patch(path, (PatchableContents) contents)) {
+                            case unchanged:
+                                return null;
+                            case patched:
+                                return new PendingWrite(path, null, null);
+                            case replace_tail:
+                                if (options.durability == DurabilityMode.none) {
+                                    return rewriteTail(path, (PatchableContents) contents);
+                                }
+                                return writeTailReplacement(path, (PatchableContents) contents);
+                            default:
+                                break;
+                        }
+                    } catch (IOException e) {
+                        // the patch may have been left half done, so the whole file is replaced in one go
+                        return writeReplacement(path, contents);
+                    }
+                }
+                return rewrite(path, contents);
+            case atomic:
+                return writeReplacement(path, contents);
+            default:
+                return rewrite(path, contents);
+        }
+    }
+
+    /**
+     * A file that has been written, but not synced or put in place yet.
+     */
+    static final class PendingWrite {
+        final Path path;
+        private final Path temp; // for an atomic save, the file that is moved over the real one once it is synced. Otherwise null
+        private final FileFingerprint.Recorder recorder; // null if not all of the text went through it, like in a patch
+
+        private PendingWrite(Path path, Path temp, FileFingerprint.Recorder recorder) {
+            this.path = path;
+            this.temp = temp;
+            this.recorder = recorder;
+        }
+
+        /**
+         * The bytes that were written, if all of them were, so that the fingerprint of the file can be taken without reading it back.
+         * @return null if only some of them were written.
+         */
+        FileFingerprint.Recorder recorder() {
+            return recorder;
+        }
+
+        /**
+         * Forces the written text to the disk, if the durability mode asks for it.
+         */
+        void sync(DurabilityMode durability) throws IOException {
+            if (durability != DurabilityMode.none) {
+                try (FileChannel channel = FileChannel.open(temp != null ? temp : path, StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+        }
+
+        /**
+         * Puts the written text in place. For an atomic save, this moves the temporary file over the real one.
+         */
+        void finish() throws IOException {
+            if (temp == null) {
+                return;
+            }
+
+            copyPermissions(path, temp);
+            moveIntoPlace(temp, path);
+        }
+
+        /**
+         * Cleans up after a save that failed before it was finished.
+         */
+        void abandon() {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {} // the save has already failed, and this is just tidying up
+            }
+        }
+    }
+
+    private static PendingWrite rewrite(Path path, Contents contents) throws IOException {
+        FileFingerprint.Recorder recorder = new FileFingerprint.Recorder();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(recorder.wrap(Channels.newOutputStream(channel)), contents);
+        }
+        return new PendingWrite(path, null, recorder);
+    }
+
+    private static PatchResult patch(Path path, PatchableContents contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            return contents.patch(channel);
+        }
+    }
+
+    /**
+     * Writes the text to a new file next to the old one, which {@link PendingWrite#finish()} then moves over the old one, so that the file
+     * always has either all of the old text or all of the new text, even if the program or the computer crashes in the middle of the save.
+     */
+    private static PendingWrite writeReplacement(Path path, Contents contents) throws IOException {
+        Path temp = createTempFile(path);
+        PendingWrite write = new PendingWrite(path, temp, new FileFingerprint.Recorder());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            write(write.recorder.wrap(Channels.newOutputStream(channel)), contents);
+        } catch (IOException | RuntimeException e) {
+            write.abandon();
+            throw e;
+        }
+        return write;
+    }
+
+    /**
+     * Writes the text from {@link PatchableContents#tailStart()} on into the file itself, and cuts off whatever comes after it.
+     * Only used when the save doesn't have to survive a crash anyway, since a crash can leave the file with a mix of old and new text.
+     */
+    private static PendingWrite rewriteTail(Path path, PatchableContents contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.position(contents.tailStart());
+            OutputStream out = Channels.newOutputStream(channel);
+            contents.writeTail(out);
+            out.flush();
+            channel.truncate(channel.position());
+        }
+        return new PendingWrite(path, null, null);
+    }
+
+    /**
+     * Like {@link #writeReplacement(Path, Contents)}, but the start of the new file is copied from the old one,
+     * without going through the program, and only the rest of it is written.
+     */
+    private static PendingWrite writeTailReplacement(Path path, PatchableContents contents) throws IOException {
+        Path temp = createTempFile(path);
+        PendingWrite write = new PendingWrite(path, temp, null);
+        try (FileChannel from = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel to = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long start = contents.tailStart();
+            while (to.position() < start) {
+                if (from.transferTo(to.position(), start - to.position(), to) <= 0) {
+                    throw new IOException(path + " got shorter while it was being saved");
+                }
+            }
+            OutputStream out = Channels.newOutputStream(to);
+            contents.writeTail(out);
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            write.abandon();
+            throw e;
+        }
+        return write;
+    }
+
+    /**
+     * Writes a file that only this library reads, like a cache or an index next to a data file, so that another program
+     * loading it at the same time never sees half of it. Unlike a save, it isn't forced to the disk, since it can always be made again.
+     */
+    static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Path temp = createTempFile(path);
+        try {
+            Files.write(temp, bytes);
+            moveIntoPlace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // next to the file, since a move to another file system can't be atomic
+    private static Path createTempFile(Path path) throws IOException {
+        return Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+    }
+
+    private static void moveIntoPlace(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void write(OutputStream out, Contents contents) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        contents.writeTo(writer);
+        writer.flush();
+    }
+
+    // temp files are created so that only their owner can read them, which the file they replace shouldn't suddenly become
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (Files.exists(from)) {
+            PosixFileAttributeView view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+            if (view != null) {
+                Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+            }
+        }
+    }
+
+    /**
+     * Forces the directory a file is in to the disk, if the durability mode asks for it.
+     */
+    static void forceDirectory(Path path, DurabilityMode durability) {
+        if (durability != DurabilityMode.fsync_data_and_dir) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {} // some platforms (like Windows) can't open or force a directory, and there is nothing else to try there
+    }
+}
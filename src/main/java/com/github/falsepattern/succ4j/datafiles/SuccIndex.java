@@ -0,0 +1,321 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.LazyChildren;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.NodeChildrenType;
+import com.github.falsepattern.util.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of a SUCC file, used by a {@link ReadOnlyDataFile} when {@link LoadOptions#indexed} is on. It is kept next to the file,
+ * with an "i" added to its name.
+ * <p>
+ * The index holds the text of every top-level line of the file, and for each top-level key, where the lines nested under it are in the file.
+ * Loading an indexed file only reads the index. The lines under a key are read and parsed the first time something needs them,
+ * by reading just that part of the file.
+ * <p>
+ * The index remembers the size and last modified time of the file it was made from. If either doesn't match the file anymore,
+ * the whole file is parsed once to make the index again.
+ */
+final class SuccIndex {
+    private SuccIndex() {}
+
+    private static final int magic = 0x53554349; // "SUCI"
+    private static final int version = 1;
+
+    private static final byte plainLine = 0;
+    private static final byte keyNode = 1;
+
+    /**
+     * Where the index of a file is kept.
+     */
+    static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + "i");
+    }
+
+    /**
+     * Loads the top-level lines of a file from its index, making the index again first if the one there is out of date.
+     */
+    static Pair<List<Line>, Map<String, KeyNode>> load(Path path, ReadableDataFile fileRef) throws IOException {
+        if (!Files.exists(path)) {
+            return DataConverter.dataStructureFromSUCC("", fileRef);
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Path indexPath = pathFor(path);
+        Pair<List<Line>, Map<String, KeyNode>> data = read(indexPath, path, size, modified);
+        if (data != null) {
+            return data;
+        }
+
+        byte[] index = build(Files.readAllBytes(path), size, modified);
+        if (index == null) { // the file can't be split up by its bytes, so it is just parsed whole
+            return DataConverter.dataStructureFromSUCC(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), fileRef);
+        }
+
+        try {
+            // moved over the index in one go, so that another program loading the same file never sees half an index
+            SuccFileSaver.writeAtomically(indexPath, index);
+        } catch (IOException ignored) {} // the file is still loaded from the index in memory, it just has to be indexed again next time
+        return parse(ByteBuffer.wrap(index), path, size, modified);
+    }
+
+    private static Pair<List<Line>, Map<String, KeyNode>> read(Path indexPath, Path path, long size, long modified) {
+        try {
+            return parse(ByteBuffer.wrap(Files.readAllBytes(indexPath)), path, size, modified);
+        } catch (IOException | RuntimeException e) { // a missing or garbled index is made again
+            return null;
+        }
+    }
+
+    /**
+     * @return The top-level lines in the index, or null if it was made from a different version of the file.
+     */
+    private static Pair<List<Line>, Map<String, KeyNode>> parse(ByteBuffer in, Path path, long size, long modified) {
+        if (in.getInt() != magic || in.getInt() != version || in.getLong() != size || in.getLong() != modified) {
+            return null;
+        }
+
+        int count = in.getInt();
+        List<Line> lines = new ArrayList<>(count);
+        Map<String, KeyNode> nodes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte kind = in.get();
+            String rawText = getString(in);
+            if (kind == plainLine) {
+                lines.add(new Line(rawText));
+                continue;
+            } else if (kind != keyNode) {
+                throw new IllegalStateException("Unknown kind of line: " + kind);
+            }
+
+            KeyNode node = new KeyNode(rawText, null);
+            NodeChildrenType childNodeType = NodeChildrenType.values()[in.get()];
+            int firstLineNumber = in.getInt();
+            long offset = in.getLong();
+            int length = in.getInt();
+            if (offset < 0 || length < 0 || offset + length > size) {
+                throw new IllegalStateException("Section out of bounds: " + offset + " + " + length);
+            }
+            node.childNodeType = childNodeType;
+            if (firstLineNumber >= 0) { // -1 if the key has no lines nested under it
+                node.setUnloadedChildren(new IndexedSection(path, size, modified, offset, length, firstLineNumber));
+            }
+            lines.add(node);
+            nodes.put(node.getKey(), node);
+        }
+
+        if (in.hasRemaining()) {
+            throw new IllegalStateException("Unexpected data at the end of the index");
+        }
+        return new Pair<>(lines, nodes);
+    }
+
+    /**
+     * Parses a whole file and makes its index.
+     * @return The index, or null if the file can't be indexed.
+     */
+    private static byte[] build(byte[] bytes, long size, long modified) throws IOException {
+        if (bytes.length != size) { // changed while it was being read
+            return null;
+        }
+
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        List<Line> lines = DataConverter.dataStructureFromSUCC(text, null).key;
+        TextPosition position = new TextPosition(text);
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(index);
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeInt(lines.size());
+        for (Line line : lines) {
+            if (line.getSource() != text) {
+                return null;
+            }
+
+            boolean isNode = line instanceof Node;
+            if (isNode && !(line instanceof KeyNode)) {
+                return null;
+            }
+            out.writeByte(isNode ? keyNode : plainLine);
+            putString(out, text.substring(line.getSourceStart(), line.getSourceEnd()));
+            if (!isNode) {
+                continue;
+            }
+
+            Node node = (Node) line;
+            List<Line> children = node.getChildLines();
+            out.writeByte(node.childNodeType.ordinal());
+            if (children.isEmpty()) {
+                out.writeInt(-1);
+                out.writeLong(0);
+                out.writeInt(0);
+                continue;
+            }
+
+            int start = children.get(0).getSourceStart();
+            int end = subtreeEnd(node);
+            if (end < start || !position.advanceTo(start)) {
+                return null;
+            }
+            int firstLineNumber = position.lineNumber;
+            long offset = position.byteOffset;
+            if (!position.advanceTo(end)) {
+                return null;
+            }
+            out.writeInt(firstLineNumber);
+            out.writeLong(offset);
+            out.writeInt((int) (position.byteOffset - offset));
+        }
+
+        if (!position.advanceTo(text.length()) || position.byteOffset != size) { // the bytes weren't valid UTF-8, so the offsets would be wrong
+            return null;
+        }
+        out.flush();
+        return index.toByteArray();
+    }
+
+    /**
+     * Where the last line nested under a node ends, or -1 if any of them isn't a range of the same text.
+     */
+    private static int subtreeEnd(Node node) {
+        Line last = node;
+        while (last instanceof Node && !((Node) last).getChildLines().isEmpty()) {
+            List<Line> children = ((Node) last).getChildLines();
+            Line child = children.get(children.size() - 1);
+            if (child.getSource() != node.getSource()) {
+                return -1;
+            }
+            last = child;
+        }
+        return last.getSourceEnd();
+    }
+
+    /**
+     * Walks through a text, keeping track of the line number and the UTF-8 byte offset of where it is.
+     */
+    private static class TextPosition {
+        private final String text;
+        int charOffset = 0;
+        long byteOffset = 0;
+        int lineNumber = 0;
+
+        TextPosition(String text) {
+            this.text = text;
+        }
+
+        /**
+         * @return false if the position is behind where it has to go.
+         */
+        boolean advanceTo(int target) {
+            if (target < charOffset) {
+                return false;
+            }
+            for (; charOffset < target; charOffset++) {
+                char c = text.charAt(charOffset);
+                if (c < 0x80) {
+                    byteOffset++;
+                    // line breaks are counted the same way the parser splits lines, with \r\n as one line break
+                    if (c == '\n' || c == '\r' && (charOffset + 1 >= text.length() || text.charAt(charOffset + 1) != '\n')) {
+                        lineNumber++;
+                    }
+                } else if (c < 0x800) {
+                    byteOffset += 2;
+                } else if (Character.isHighSurrogate(c) && charOffset + 1 < text.length() && Character.isLowSurrogate(text.charAt(charOffset + 1))) {
+                    byteOffset += 4;
+                    charOffset++;
+                } else {
+                    byteOffset += 3;
+                }
+            }
+            return charOffset == target;
+        }
+    }
+
+    private static void putString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The lines nested under a top-level key, which are read from the file and parsed the first time something needs them.
+     */
+    private static class IndexedSection implements LazyChildren {
+        private final Path path;
+        private final long size;
+        private final long modified;
+        private final long offset;
+        private final int length;
+        private final int firstLineNumber;
+
+        IndexedSection(Path path, long size, long modified, long offset, int length, int firstLineNumber) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.offset = offset;
+            this.length = length;
+            this.firstLineNumber = firstLineNumber;
+        }
+
+        @Override
+        public void loadInto(Node node) {
+            DataConverter.addChildrenFromSUCC(node, readText(), firstLineNumber, null);
+        }
+
+        @Override
+        public Iterable<String> getRawLines() {
+            return Arrays.asList(ParsingLogicExtensions.splitIntoLines(readText()));
+        }
+
+        private String readText() {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // if the file was changed since it was indexed, this part of it could be anything now
+                if (channel.size() != size || Files.getLastModifiedTime(path).toMillis() != modified) {
+                    throw new IllegalStateException("File " + path + " was changed after it was loaded, reload it to read it again");
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+                return new String(buffer.array(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException("Error while reading file " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.falsepattern.succ4j.datafiles;
+
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.util.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The journal that a {@link DataFile} appends its changes to when {@link SaveOptions#journal} is on, instead of rewriting the whole file.
+ * <p>
+ * Every record in the journal holds the new state of one top-level key: either its whole SUCC text, or the fact that it was deleted.
+ * That means replaying a record twice, or replaying it over a file that already has the change, does no harm.
+ * Each record is a header line of the form {@code set <length> <crc32>} or {@code delete <length> <crc32>}, then that many bytes of UTF-8
+ * text, then a newline. A record that a crash cut off fails those checks, and it ends the journal.
+ */
+final class SuccJournal {
+    private SuccJournal() {}
+
+    private static final String setRecord = "set";
+    private static final String deleteRecord = "delete";
+
+    /**
+     * Where the journal of a file is kept: next to it, with ".journal" added to its name.
+     */
+    static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + ".journal");
+    }
+
+    /**
+     * Adds a record of the current state of a top-level key to a batch of records.
+     * @param node The node of the key, or null if it has been deleted.
+     */
+    static void writeRecord(ByteArrayOutputStream records, String key, KeyNode node) {
+        String type;
+        byte[] payload;
+        if (node != null) {
+            type = setRecord;
+            payload = DataConverter.succFromDataStructure(Collections.singletonList(node)).getBytes(StandardCharsets.UTF_8);
+        } else {
+            type = deleteRecord;
+            payload = key.getBytes(StandardCharsets.UTF_8);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        byte[] header = (type + " " + payload.length + " " + Long.toHexString(crc.getValue()) + "\n").getBytes(StandardCharsets.UTF_8);
+        records.write(header, 0, header.length);
+        records.write(payload, 0, payload.length);
+        records.write('\n');
+    }
+
+    /**
+     * Appends a batch of records to the end of a journal, creating it if it doesn't exist.
+     */
+    static void append(Path journal, ByteArrayOutputStream records, DurabilityMode durability) throws IOException {
+        boolean created = !Files.exists(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (durability != DurabilityMode.none) {
+                channel.force(false);
+            }
+        }
+        if (created) {
+            SuccFileSaver.forceDirectory(journal, durability);
+        }
+    }
+
+    /**
+     * Deletes a journal, once everything in it has been saved to the file itself.
+     */
+    static void delete(Path journal, DurabilityMode durability) throws IOException {
+        if (Files.deleteIfExists(journal)) {
+            // if the journal came back after a crash, its old records would be replayed over the newer file
+            SuccFileSaver.forceDirectory(journal, durability);
+        }
+    }
+
+    /**
+     * Applies every complete record of a journal to freshly parsed data.
+     * @param repair If true, anything after the last complete record is cut off the journal, so that new records don't end up behind it.
+     * @return The size of the journal, after repairing it, or 0 if there isn't one.
+     */
+    static long replay(Path journal, Pair<List<Line>, Map<String, KeyNode>> data, ReadableDataFile fileRef, boolean repair) throws IOException {
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+
+        byte[] bytes = Files.readAllBytes(journal);
+        int position = 0;
+        while (position < bytes.length) {
+            int end = replayRecord(bytes, position, data, fileRef);
+            if (end < 0) {
+                break;
+            }
+            position = end;
+        }
+
+        if (repair && position < bytes.length) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return Where the next record starts, or -1 if the record at the position isn't complete.
+     */
+    private static int replayRecord(byte[] bytes, int position, Pair<List<Line>, Map<String, KeyNode>> data, ReadableDataFile fileRef) {
+        int headerEnd = position;
+        while (headerEnd < bytes.length && bytes[headerEnd] != '\n') {
+            headerEnd++;
+        }
+        if (headerEnd >= bytes.length) {
+            return -1;
+        }
+
+        String[] header = new String(bytes, position, headerEnd - position, StandardCharsets.UTF_8).split(" ");
+        if (header.length != 3 || !(header[0].equals(setRecord) || header[0].equals(deleteRecord))) {
+            return -1;
+        }
+
+        int length;
+        long expectedCrc;
+        try {
+            length = Integer.parseInt(header[1]);
+            expectedCrc = Long.parseLong(header[2], 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        int payloadStart = headerEnd + 1;
+        if (length < 0 || length > bytes.length - payloadStart - 1 || bytes[payloadStart + length] != '\n') {
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, payloadStart, length);
+        if (crc.getValue() != expectedCrc) {
+            return -1;
+        }
+
+        String payload = new String(bytes, payloadStart, length, StandardCharsets.UTF_8);
+        if (header[0].equals(deleteRecord)) {
+            replaceTopLevelNode(data, payload, null);
+        } else {
+            for (KeyNode node : DataConverter.dataStructureFromSUCC(payload, fileRef).value.values()) {
+                replaceTopLevelNode(data, node.getKey(), node);
+            }
+        }
+        return payloadStart + length + 1;
+    }
+
+    private static void replaceTopLevelNode(Pair<List<Line>, Map<String, KeyNode>> data, String key, KeyNode node) {
+        KeyNode old = node != null ? data.value.put(key, node) : data.value.remove(key);
+        if (old == null) {
+            if (node != null) {
+                data.key.add(node);
+            }
+            return;
+        }
+
+        List<Line> lines = data.key;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i) == old) {
+                if (node != null) {
+                    lines.set(i, node);
+                } else {
+                    lines.remove(i);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.falsepattern.succ4j.datafiles.abstractions;
+
+/**
+ * Tells a listener added with {@link ReadableDataFile#addChangeListener(String[], java.util.function.Consumer)}
+ * that the data at its path is different after the file was reloaded.
+ */
+public class ChangeEvent {
+    /**
+     * The file that was reloaded.
+     */
+    public final ReadableDataFile file;
+
+    /**
+     * The path the listener was added for. Don't change it, it is shared by all listeners of the path.
+     */
+    public final String[] path;
+
+    /**
+     * Whether there was data at the path before the file was reloaded.
+     * If the old data of an indexed file couldn't be read anymore, this is true, and the data counts as changed.
+     */
+    public final boolean existedBefore;
+
+    /**
+     * Whether there is data at the path now. If this is false, the data at the path was removed.
+     */
+    public final boolean existsNow;
+
+    public ChangeEvent(ReadableDataFile file, String[] path, boolean existedBefore, boolean existsNow) {
+        this.file = file;
+        this.path = path;
+        this.existedBefore = existedBefore;
+        this.existsNow = existsNow;
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.falsepattern.succ4j.datafiles.abstractions;
+
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.NodeChildrenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The change listeners of a file, kept as a tree of the paths they listen to.
+ * After a reload, only the parts of the old and new data that have listeners are compared, so the work is in the number of listened paths,
+ * not the size of the file. Comparing a subtree stops at its first difference, and the listeners of a path that didn't change aren't run.
+ */
+final class ChangeListeners {
+    private static class PathListeners {
+        final String[] path;
+        final Map<String, PathListeners> children = new HashMap<>();
+        final List<Consumer<ChangeEvent>> listeners = new ArrayList<>();
+
+        PathListeners(String[] path) {
+            this.path = path;
+        }
+
+        boolean isEmpty() {
+            return listeners.isEmpty() && children.isEmpty();
+        }
+    }
+
+    private final PathListeners root = new PathListeners(new String[0]);
+
+    synchronized void add(String[] path, Consumer<ChangeEvent> listener) {
+        PathListeners current = root;
+        for (int i = 0; i < path.length; i++) {
+            int depth = i + 1;
+            current = current.children.computeIfAbsent(path[i], ignored -> new PathListeners(Arrays.copyOf(path, depth)));
+        }
+        current.listeners.add(listener);
+    }
+
+    synchronized void remove(String[] path, Consumer<ChangeEvent> listener) {
+        remove(root, path, 0, listener);
+    }
+
+    private static void remove(PathListeners current, String[] path, int depth, Consumer<ChangeEvent> listener) {
+        if (depth == path.length) {
+            current.listeners.remove(listener);
+            return;
+        }
+
+        PathListeners child = current.children.get(path[depth]);
+        if (child == null) {
+            return;
+        }
+        remove(child, path, depth + 1, listener);
+        if (child.isEmpty()) { // paths that nothing listens to anymore don't need to be compared
+            current.children.remove(path[depth]);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    /**
+     * Loads the data at a path, and everything nested in it, if it hasn't been yet. The data an indexed file didn't load can't be read anymore
+     * once the file has changed, so listened paths are kept loaded, to still have something to compare with after the next reload.
+     */
+    static void loadPath(Map<String, KeyNode> nodes, String[] path) {
+        KeyNode node = nodes.get(path[0]);
+        for (int i = 1; i < path.length; i++) {
+            node = getChild(node, path[i]);
+        }
+        loadSubtree(node);
+    }
+
+    /**
+     * Compares the data of a file from before and after it was reloaded, and runs the listeners of every path whose data is different.
+     * If listeners throw, the rest still run, and the first exception is thrown afterwards, with the others suppressed in it.
+     */
+    void fireChanges(ReadableDataFile file, Map<String, KeyNode> oldNodes, Map<String, KeyNode> newNodes) {
+        List<Runnable> calls = new ArrayList<>();
+        synchronized (this) {
+            for (PathListeners topLevel : root.children.values()) {
+                String key = topLevel.path[0];
+                try {
+                    collectChanges(file, topLevel, oldNodes.get(key), true, newNodes.get(key), calls);
+                } catch (RuntimeException ignored) {
+                    // the new data couldn't be read, because the file has changed again. The reload that change causes reports it.
+                }
+            }
+        }
+
+        // run outside of the lock, so that listeners can add and remove listeners themselves
+        RuntimeException failure = null;
+        for (Runnable call : calls) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @param oldKnown False if the old data at the path couldn't be read anymore, which makes it count as changed.
+     */
+    private static void collectChanges(ReadableDataFile file, PathListeners current, KeyNode oldNode, boolean oldKnown, KeyNode newNode, List<Runnable> calls) {
+        if (oldKnown && oldNode == null && newNode == null) {
+            return;
+        }
+
+        if (!current.listeners.isEmpty()) {
+            loadSubtree(newNode);
+            if (!oldKnown || !sameOldSubtree(oldNode, newNode)) {
+                ChangeEvent event = new ChangeEvent(file, current.path, !oldKnown || oldNode != null, newNode != null);
+                for (Consumer<ChangeEvent> listener : current.listeners) {
+                    calls.add(() -> listener.accept(event));
+                }
+            }
+        }
+
+        for (PathListeners child : current.children.values()) {
+            String key = child.path[child.path.length - 1];
+            KeyNode oldChild = null;
+            boolean oldChildKnown = oldKnown;
+            if (oldKnown) {
+                try {
+                    oldChild = getChild(oldNode, key);
+                } catch (RuntimeException e) {
+                    oldChildKnown = false;
+                }
+            }
+            collectChanges(file, child, oldChild, oldChildKnown, getChild(newNode, key), calls);
+        }
+    }
+
+    private static KeyNode getChild(KeyNode node, String key) {
+        if (node == null || node.childNodeType != NodeChildrenType.key || !node.containsChildNode(key)) {
+            return null;
+        }
+        return node.getChildAddressedByName(key);
+    }
+
+    private static void loadSubtree(Line line) {
+        if (line instanceof Node) {
+            for (Line child : ((Node) line).getChildLines()) {
+                loadSubtree(child);
+            }
+        }
+    }
+
+    // the new subtree is loaded already, so only reading the old one can fail, which counts as a change
+    private static boolean sameOldSubtree(Line oldLine, Line newLine) {
+        try {
+            return sameSubtree(oldLine, newLine);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean sameSubtree(Line a, Line b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || !sameText(a, b)) {
+            return false;
+        }
+        if (!(a instanceof Node) || !(b instanceof Node)) {
+            return (a instanceof Node) == (b instanceof Node);
+        }
+
+        List<Line> aChildren = ((Node) a).getChildLines();
+        List<Line> bChildren = ((Node) b).getChildLines();
+        if (aChildren.size() != bChildren.size()) {
+            return false;
+        }
+        for (int i = 0; i < aChildren.size(); i++) {
+            if (!sameSubtree(aChildren.get(i), bChildren.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // compares the lines where they are, without copying them out of the text of the file
+    private static boolean sameText(Line a, Line b) {
+        int length = a.getRawLength();
+        if (length != b.getRawLength()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.getRawChar(i) != b.getRawChar(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.falsepattern.succ4j.datafiles.abstractions;
+
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+
+/**
+ * The changes made inside {@link ReadableWritableDataFile#batch(java.util.function.Consumer)}.
+ * Everything done through this is applied to the file right away, but the file is only saved once, when the batch is over.
+ */
+public class DataFileBatch {
+    private final ReadableWritableDataFile file;
+
+    DataFileBatch(ReadableWritableDataFile file) {
+        this.file = file;
+    }
+
+    /**
+     * The file this batch makes changes to.
+     */
+    public ReadableWritableDataFile getFile() {
+        return file;
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#get(ClassTree, String, Object)}.
+     */
+    public <T> T get(ClassTree<T> type, String key, T defaultValue) {
+        return file.get(type, key, defaultValue);
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#getAtPath(ClassTree, Object, String[])}.
+     */
+    public <T> T getAtPath(ClassTree<T> type, T defaultValue, String... path) {
+        return file.getAtPath(type, defaultValue, path);
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#set(ClassTree, String, Object)}.
+     */
+    public <T> DataFileBatch set(ClassTree<?> type, String key, T value) {
+        file.set(type, key, value);
+        return this;
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#setNonGeneric(ClassTree, String, Object)}.
+     */
+    public DataFileBatch setNonGeneric(ClassTree<?> type, String key, Object value) {
+        file.setNonGeneric(type, key, value);
+        return this;
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#setAtPath(ClassTree, Object, String...)}.
+     */
+    public <T> DataFileBatch setAtPath(ClassTree<T> type, T value, String... path) {
+        file.setAtPath(type, value, path);
+        return this;
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#setAtPathNonGeneric(ClassTree, Object, String...)}.
+     */
+    public DataFileBatch setAtPathNonGeneric(ClassTree<?> type, Object value, String... path) {
+        file.setAtPathNonGeneric(type, value, path);
+        return this;
+    }
+
+    /**
+     * Same as {@link ReadableWritableDataFile#deleteKey(String)}.
+     */
+    public DataFileBatch deleteKey(String key) {
+        file.deleteKey(key);
+        return this;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.falsepattern.succ4j.datafiles.abstractions;
 
+import com.github.falsepattern.succ4j.datafiles.FileFingerprint;
 import com.github.falsepattern.util.FalseUtil;
 
 import java.io.File;
@@ -16,12 +17,18 @@ public interface IDataFileOnDisk {
 
     default long getSizeOnDisk() {
         try {
-            return Files.size(Paths.get(getFileName()));
+            return Files.size(Paths.get(getFilePath()));
         } catch (IOException e) {
             throw new RuntimeException("Error while trying to get file size", e);
         }
     }
 
+    /**
+     * The fingerprint of the file as it was when it was last loaded or saved, or null if there was no file then.
+     * Auto reload uses this to skip reloading a file whose contents haven't really changed.
+     */
+    FileFingerprint getFingerprint();
+
     boolean getAutoReload();
     void setAutoReload(boolean value);
 
@@ -3,6 +3,7 @@ package com.github.falsepattern.succ4j.datafiles.abstractions;
 import com.github.falsepattern.util.Out;
 import com.github.falsepattern.util.Pair;
 import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
 import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryReadOnlyDataFile;
 import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
 import com.github.falsepattern.succ4j.parsinglogic.NodeManager;
@@ -11,7 +12,11 @@ import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
 import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
 import com.github.falsepattern.succ4j.parsinglogic.types.BaseTypes;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * A SUCC file that can be read from
@@ -28,11 +33,21 @@ public abstract class ReadableDataFile {
     // When a default value is not supplied, we search for it in this.
     protected final MemoryReadOnlyDataFile defaultFileCache;
 
+    /**
+     * Rules for how this file is read from wherever it is stored.
+     */
+    public LoadOptions loadOptions;
+
     public ReadableDataFile() {
         this(null);
     }
 
     public ReadableDataFile(String defaultFileText) {
+        this(defaultFileText, LoadOptions.defaultOptions);
+    }
+
+    public ReadableDataFile(String defaultFileText, LoadOptions loadOptions) {
+        this.loadOptions = loadOptions;
         if (defaultFileText == null) {
             defaultFileCache = null;
         } else {
@@ -45,16 +60,93 @@ public abstract class ReadableDataFile {
      */
     protected abstract String getSavedText();
 
+    /**
+     * Open the file text for reading. This is what {@link #reloadAllData()} parses from.
+     * Override this if the text can be streamed from wherever you're storing it, rather than loaded into one string first.
+     */
+    protected Reader openSavedText() throws IOException {
+        return new StringReader(getSavedText());
+    }
+
+    /**
+     * Parse the file text into a data structure. By default this streams from {@link #openSavedText()}.
+     */
+    protected Pair<List<Line>, Map<String, KeyNode>> parseSavedData() throws IOException {
+        try (Reader succ = openSavedText()) {
+            return DataConverter.dataStructureFromSUCC(succ, this);
+        }
+    }
+
+    /**
+     * Throws away the data of this file and parses it again from wherever it is stored.
+     * Afterwards, the listeners of every path whose data is different run, see {@link #addChangeListener(String[], Consumer)}.
+     * If any of them throw, the data is still reloaded, the other listeners still run, and the first exception is thrown at the end.
+     */
     public void reloadAllData() {
+        Pair<List<Line>, Map<String, KeyNode>> data;
         try {
-            String succ = getSavedText();
-            //TODO
-            Pair<List<Line>, Map<String, KeyNode>> data = DataConverter.dataStructureFromSUCC(succ, this);
-            topLevelLines = data.key;
-            topLevelNodes = data.value;
+            data = parseSavedData();
         } catch (Exception e) {
             throw new RuntimeException("Error parsing data from file: ", e);
         }
+
+        // Parsing can take a while, so only the swap holds the lock, but it has to: a reload can run on a file watcher thread,
+        // and a batch or a save running at the same time would end up with half of the old data and half of the new.
+        Map<String, KeyNode> oldNodes;
+        Map<String, KeyNode> newNodes;
+        synchronized (this) {
+            oldNodes = topLevelNodes;
+            replaceData(data);
+            dataReloaded();
+            newNodes = topLevelNodes;
+        }
+
+        if (!changeListeners.isEmpty()) {
+            changeListeners.fireChanges(this, oldNodes, newNodes);
+        }
+    }
+
+    /**
+     * Called by {@link #reloadAllData()} right after it replaced the data, while holding the lock of this file,
+     * so that nothing else can change or save the file before whatever depends on the data is reset.
+     */
+    protected void dataReloaded() {}
+
+    private final ChangeListeners changeListeners = new ChangeListeners();
+
+    /**
+     * Runs a listener whenever the data at a path, or anything nested under it, is different after the file is reloaded,
+     * like when an auto-reloading file changes on disk. The listeners of paths that didn't change don't run,
+     * so code that only cares about some keys doesn't have to read the whole file again after every reload.
+     * This includes the data being added or removed.
+     * Listeners run on the thread that reloaded the file, after it has been reloaded. The data at the path is loaded right away, if it wasn't yet.
+     * If a listener throws, the exception is thrown from {@link #reloadAllData()} once the other listeners have run.
+     * For an auto reload, that means it goes to {@link com.github.falsepattern.util.CustomFileWatcher#errorHandler}.
+     * @param path The nested path of the data to listen to, starting with a top-level key.
+     */
+    public void addChangeListener(String[] path, Consumer<ChangeEvent> listener) {
+        if (path.length < 1) {
+            throw new IllegalArgumentException("Path must have a length greater than 0");
+        }
+        changeListeners.add(path, listener);
+        try {
+            ChangeListeners.loadPath(topLevelNodes, path);
+        } catch (RuntimeException ignored) {} // the file has changed since it was loaded, so the next reload counts the path as changed anyway
+    }
+
+    /**
+     * Stops running a listener that was added with {@link #addChangeListener(String[], Consumer)} for the same path.
+     */
+    public void removeChangeListener(String[] path, Consumer<ChangeEvent> listener) {
+        changeListeners.remove(path, listener);
+    }
+
+    /**
+     * Throws away the data of this file and uses some freshly parsed data instead.
+     */
+    protected void replaceData(Pair<List<Line>, Map<String, KeyNode>> data) {
+        topLevelLines = data.key;
+        topLevelNodes = data.value;
     }
 
     /**
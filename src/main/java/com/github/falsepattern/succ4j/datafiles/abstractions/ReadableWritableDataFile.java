@@ -1,21 +1,36 @@
 package com.github.falsepattern.succ4j.datafiles.abstractions;
 
 import com.github.falsepattern.util.Out;
+import com.github.falsepattern.util.Pair;
 import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.SaveOptions;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
 import com.github.falsepattern.succ4j.parsinglogic.NodeManager;
+import com.github.falsepattern.succ4j.parsinglogic.SuccWriter;
 import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
 import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
 import com.github.falsepattern.succ4j.parsinglogic.types.BaseTypes;
 import com.github.falsepattern.succ4j.style.FileStyle;
 import com.github.falsepattern.succ4j.Utilities;
 import com.github.falsepattern.succ4j.parsinglogic.types.ComplexTypes;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-public abstract class ReadableWritableDataFile extends ReadableDataFile {
+public abstract class ReadableWritableDataFile extends ReadableDataFile implements AutoCloseable {
 
     /**
      * Rules for how to format new data saved to this file.
@@ -29,6 +44,11 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
      */
     public boolean autoSave = true;
 
+    /**
+     * Rules for how and when this file is saved.
+     */
+    public SaveOptions saveOptions = SaveOptions.defaultOptions;
+
     public ReadableWritableDataFile() {
         this(null);
     }
@@ -37,6 +57,10 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
         super(defaultFileText);
     }
 
+    public ReadableWritableDataFile(String defaultFileText, LoadOptions loadOptions) {
+        super(defaultFileText, loadOptions);
+    }
+
     /**
      * Save the file text to wherever you're storing it.
      */
@@ -50,18 +74,239 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
         reloadAllData();
     }
 
+    // Every change to the data of this file counts up modificationCount. When the file is saved or reloaded, the count it had at that
+    // point is remembered in savedModificationCount, so if the two are the same, there is nothing to save.
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile long savedModificationCount = 0;
+
+    /**
+     * Tells this file that its data has changed and needs to be saved. The nodes of this file call this whenever they are changed.
+     */
+    public void markModified() {
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Whether the data of this file has changed since it was last saved or loaded.
+     */
+    public boolean hasUnsavedChanges() {
+        return modificationCount.get() != savedModificationCount;
+    }
+
+    /**
+     * How many changes have been made to the data of this file since it was created. Only good for comparing with itself.
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Tells this file that its data, as it was when {@link #getModificationCount()} returned the given count, has been saved by something
+     * other than {@link #saveAllData()}, like a {@link com.github.falsepattern.succ4j.datafiles.SaveCoordinator}.
+     */
+    public synchronized void markSaved(long modificationCount) {
+        if (modificationCount - savedModificationCount > 0) {
+            savedModificationCount = modificationCount;
+        }
+    }
+
+    @Override
+    protected void dataReloaded() {
+        savedModificationCount = modificationCount.get(); // whatever changed before the reload was thrown away with the old data
+    }
+
+    /**
+     * Serializes the data in this object to the file on disk. Does nothing if the data hasn't changed since it was last saved or loaded.
+     */
+    public synchronized void saveAllData() {
+        long modifications = modificationCount.get();
+        if (modifications == savedModificationCount) {
+            return;
+        }
+
+        saveData();
+        savedModificationCount = modifications;
+    }
+
+    /**
+     * Writes the current data of this file to wherever you're storing it. This is what {@link #saveAllData()} uses.
+     * By default, the data is rendered to a string and passed to {@link #setSavedText(String)}.
+     * Override this if the data can be streamed to wherever you're storing it instead.
+     */
+    protected void saveData() {
+        setSavedText(getRawText());
+    }
+
+    /**
+     * Called after every change made through the methods of this class. If {@link #autoSave} is true, this saves the file,
+     * either right away or, if {@link SaveOptions#writeBehind} is true, a little later on a background thread.
+     */
+    protected void autoSaveChanges() {
+        if (!autoSave || batchDepth > 0) {
+            return;
+        }
+
+        if (saveOptions.writeBehind) {
+            WriteBehindScheduler.instance.fileChanged(this);
+        } else {
+            saveAllData();
+        }
+    }
+
+    private int batchDepth = 0; // only touched while holding the lock of this file
+
     /**
-     * Serializes the data in this object to the file on disk.
+     * Makes a batch of changes to this file, and then saves it once, instead of after every single change.
+     * The changes are saved the way {@link #autoSave} says: right away, later with write-behind, or not at all if autosave is off.
+     * If the actions throw, every change they made is undone, and the file goes back to how it was before the batch.
+     * Other threads can't change the file while a batch is running. A batch that is started inside another batch simply becomes part of it.
+     * @param actions Makes the changes, through the {@link DataFileBatch} it is given.
      */
-    public void saveAllData() {
-        String SUCC = getRawText();
-        String existingSUCC = getSavedText();
+    public synchronized void batch(Consumer<DataFileBatch> actions) {
+        if (batchDepth > 0) {
+            actions.accept(new DataFileBatch(this));
+            return;
+        }
 
-        if (!SUCC.equals(existingSUCC)) {
-            setSavedText(SUCC);
+        // The data is put back from memory, rather than reloaded from the saved text, so that a rollback neither reads the file
+        // nor tells change listeners about a change that never happened. Only the top-level keys the batch actually changes are copied,
+        // the first time each of them changes, and everything else is put back as the very same lines, so a patch save still knows them.
+        boolean hadUnsavedChanges = hasUnsavedChanges();
+        batchUndo = new BatchUndo();
+
+        batchDepth++;
+        try {
+            actions.accept(new DataFileBatch(this));
+        } catch (RuntimeException | Error e) {
+            batchDepth--;
+            BatchUndo undo = batchUndo;
+            batchUndo = null;
+            undo.rollBack();
+            if (!hadUnsavedChanges) {
+                markSaved(getModificationCount()); // back to exactly what was saved
+            }
+            throw e;
+        }
+        batchDepth--;
+        batchUndo = null;
+
+        if (hasUnsavedChanges()) {
+            autoSaveChanges();
+        }
+    }
+
+    private BatchUndo batchUndo = null; // only touched while holding the lock of this file
+
+    /**
+     * Called right before a top-level key, or something nested in it, is set or deleted.
+     */
+    private void beforeTopLevelKeyChange(String key) {
+        if (batchUndo != null) {
+            batchUndo.remember(key);
         }
     }
 
+    /**
+     * What the data of this file was before the running batch changed it.
+     */
+    private class BatchUndo {
+        private List<Line> lines = null;
+        private Map<String, KeyNode> nodes = null;
+        // The text of each top-level key as it was before the batch first changed it, or null if the key didn't exist yet.
+        private final Map<String, String> oldText = new LinkedHashMap<>();
+
+        void remember(String key) {
+            if (lines == null) {
+                lines = new ArrayList<>(getTopLevelLines());
+                nodes = new HashMap<>(getTopLevelNodes());
+            }
+            if (oldText.containsKey(key)) {
+                return;
+            }
+
+            KeyNode node = nodes.get(key);
+            oldText.put(key, node != null ? renderTopLevelNode(node) : null);
+        }
+
+        void rollBack() {
+            if (lines == null) {
+                return; // nothing was changed
+            }
+
+            for (Map.Entry<String, String> entry : oldText.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue; // the key wasn't in the old lines to begin with
+                }
+
+                // the old node has been changed in place, so it is replaced by a fresh copy of what it was
+                KeyNode changed = nodes.get(entry.getKey());
+                KeyNode restored = DataConverter.dataStructureFromSUCC(entry.getValue(), ReadableWritableDataFile.this).value.get(entry.getKey());
+                for (int i = 0; i < lines.size(); i++) {
+                    if (lines.get(i) == changed) {
+                        lines.set(i, restored);
+                        break;
+                    }
+                }
+                nodes.put(entry.getKey(), restored);
+            }
+            replaceData(new Pair<>(lines, nodes));
+
+            // the keys are back to how they were, which is a change just like any other, so it can be journaled like one
+            long modificationsBefore = getModificationCount();
+            markModified();
+            for (String key : oldText.keySet()) {
+                topLevelKeyChanged(key, modificationsBefore);
+                modificationsBefore = getModificationCount();
+            }
+        }
+    }
+
+    /**
+     * Renders a top-level node and everything nested in it, including any whitespace at its end, without the line ending of its last line.
+     */
+    private static String renderTopLevelNode(KeyNode node) {
+        StringWriter text = new StringWriter();
+        try {
+            SuccWriter writer = new SuccWriter(text);
+            writer.writeLines(Collections.singletonList(node));
+            writer.writeHeldBackWhitespace();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't happen, StringWriter doesn't throw", e);
+        }
+        StringBuffer rendered = text.getBuffer();
+        return rendered.substring(0, rendered.length() - Utilities.getNewLine().length());
+    }
+
+    /**
+     * Runs a task later, on the thread that write-behind autosave saves on, while holding the lock of this file.
+     * This is for saves that are due after some time even if nothing else changes, like compacting a journal once it is old enough.
+     * If the task throws, that is thrown from the next {@link #flush()}.
+     */
+    protected void runLater(Runnable task, long delayMillis) {
+        WriteBehindScheduler.instance.runLater(this, () -> {
+            synchronized (this) {
+                task.run();
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * Saves any changes that write-behind autosave hasn't written yet, right away.
+     * Without write-behind, this is the same as {@link #saveAllData()}.
+     * If a save on the background thread failed since the last flush, this throws that failure, after saving the changes.
+     */
+    public void flush() {
+        WriteBehindScheduler.instance.flush(this);
+    }
+
+    /**
+     * Saves any changes that haven't been written yet, the same way as {@link #flush()}. The file can still be used afterwards.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
     /**
      * Get some data from the file, saving a new value if the data does not exist.
      * @param key What the data is labeled as within the file
@@ -98,11 +343,14 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
         setNonGeneric(type, key, value);
     }
 
-    public void setNonGeneric(ClassTree<?> type, String key, Object value) {
+    public synchronized void setNonGeneric(ClassTree<?> type, String key, Object value) {
         if (value != null && !type.type.isInstance(value)) {
             throw new ClassCastException("Value is not of type " + type.toString());
         }
 
+        beforeTopLevelKeyChange(key);
+        long modificationsBefore = getModificationCount();
+
         if (!keyExists(key)) {
             KeyNode newNode = new KeyNode(0, key, this);
             getTopLevelNodes().put(key, newNode);
@@ -112,9 +360,8 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
         KeyNode node = getTopLevelNodes().get(key);
         NodeManager.setNodeData(node, value, type, style);
 
-        if (autoSave) {
-            saveAllData();
-        }
+        topLevelKeyChanged(key, modificationsBefore);
+        autoSaveChanges();
     }
 
     @Override
@@ -147,7 +394,7 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
      * @param value The value to save
      * @param path The nested path of the desired data location
      */
-    public void setAtPathNonGeneric(ClassTree<?> type, Object value, String... path) {
+    public synchronized void setAtPathNonGeneric(ClassTree<?> type, Object value, String... path) {
         if (value != null && !type.type.isInstance(value)) {
             throw new ClassCastException("Value is not of type " + type.toString());
         }
@@ -156,6 +403,9 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
             throw new IllegalArgumentException("Path must have a length greater than 0");
         }
 
+        beforeTopLevelKeyChange(path[0]);
+        long modificationsBefore = getModificationCount();
+
         if (!keyExists(path[0])) {
             KeyNode newNode = new KeyNode(0, path[0], this);
             getTopLevelNodes().put(path[0], newNode);
@@ -170,24 +420,35 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
 
         NodeManager.setNodeData(topNode, value, type, style);
 
-        if (autoSave) {
-            saveAllData();
-        }
+        topLevelKeyChanged(path[0], modificationsBefore);
+        autoSaveChanges();
     }
 
     /**
      * Remove a top-level key and all its data from the file.
      */
-    public void deleteKey(String key) {
+    public synchronized void deleteKey(String key) {
         if (!keyExists(key)) {
             return;
         }
 
+        beforeTopLevelKeyChange(key);
+        long modificationsBefore = getModificationCount();
         Node node = getTopLevelNodes().get(key);
         getTopLevelNodes().remove(key);
         getTopLevelLines().remove(node);
+        markModified();
+        topLevelKeyChanged(key, modificationsBefore);
     }
 
+    /**
+     * Called after a top-level key, or something nested in it, has been set or deleted through the methods of this class.
+     * This lets a file save just the keys that changed, instead of all of its data.
+     * @param modificationsBefore What {@link #getModificationCount()} was right before the change. If it was different after the last
+     *                            call to this, something else changed the data in between.
+     */
+    protected void topLevelKeyChanged(String key, long modificationsBefore) {}
+
     /**
      * Save this file as an object of type T, using that type's fields and properties as top-level keys.
      * @param saveThis The object to save
@@ -202,37 +463,28 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
      * @param saveThis The object to save
      */
     public void saveAsObjectNonGeneric(ClassTree<?> type, Object saveThis) {
-        boolean _autoSave = autoSave;
-        autoSave = false; // don't write to disk when we don't have to
+        batch(batch -> {
+            try {
+                for (Field f: ComplexTypes.getValidFields(type.type)) {
+                    batch.setNonGeneric(ClassTree.parseFromField(f), f.getName(), f.get(saveThis));
+                }
 
-        try {
-            for(Field f: ComplexTypes.getValidFields(type.type)) {
-                setNonGeneric(ClassTree.parseFromField(f), f.getName(), f.get(saveThis));
+                //Properties don't exist in Java 8
+                //Un-ported c# code:
+                //  foreach (var p in ComplexTypes.GetValidProperties(type))
+                //    SetNonGeneric(p.PropertyType, p.Name, p.GetValue(saveThis));
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
             }
-
-            //Properties don't exist in Java 8
-            //Un-ported c# code:
-            //  foreach (var p in ComplexTypes.GetValidProperties(type))
-            //    SetNonGeneric(p.PropertyType, p.Name, p.GetValue(saveThis));
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } finally {
-            autoSave = _autoSave;
-        }
-
-        if (autoSave) saveAllData();
+        });
     }
 
     /**
      * Save this file as a map, using the map's keys as top-level keys in the file.
      */
     public <TKey, TValue> void saveAsMap(ClassTree<Map<?, ?>> classTree, Map<TKey, TValue> map) {
-
-        boolean _autoSave = autoSave;
-        autoSave = false; // don't write to disk when we don't have to
-
-        try {
-            List<String> currentKeys = new ArrayList<>(map.size());
+        batch(batch -> {
+            Set<String> currentKeys = new HashSet<>(map.size() * 2);
             boolean first = true;
             for (TKey key: map.keySet()) {
                 if (first && !BaseTypes.isBaseType(key.getClass())) {
@@ -248,20 +500,14 @@ public abstract class ReadableWritableDataFile extends ReadableDataFile {
                 }
 
                 currentKeys.add(keyText);
-                set(classTree.getChildren().get(0), keyText, map.get(key));
+                batch.set(classTree.getChildren().get(1), keyText, map.get(key));
             }
 
-            for(String key: this.topLevelKeys()) {
+            for (String key: new ArrayList<>(this.topLevelKeys())) {
                 if (!currentKeys.contains(key)) {
-                    this.getTopLevelNodes().remove(key);
+                    batch.deleteKey(key);
                 }
             }
-        } finally {
-            autoSave = _autoSave;
-        }
-
-        if (autoSave) {
-            saveAllData();
-        }
+        });
     }
 }
@@ -0,0 +1,156 @@
+package com.github.falsepattern.succ4j.datafiles.abstractions;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves files with write-behind autosave on a single background thread, shared by all of them.
+ * A file that keeps changing is only saved once it has been quiet for a while, or once its oldest unsaved change has waited long enough.
+ */
+final class WriteBehindScheduler {
+    static final WriteBehindScheduler instance = new WriteBehindScheduler();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SUCC write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<ReadableWritableDataFile, PendingSave> pending = new ConcurrentHashMap<>();
+    // the last failure of a save on the background thread, for each file, until flush() throws it
+    private final Map<ReadableWritableDataFile, RuntimeException> failures = new ConcurrentHashMap<>();
+
+    private WriteBehindScheduler() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushAll, "SUCC write-behind shutdown"));
+    }
+
+    private static class PendingSave {
+        final long firstChange;
+        volatile long lastChange;
+        final long quietNanos;
+        final long maxDelayNanos;
+        volatile ScheduledFuture<?> future;
+
+        PendingSave(long now, long quietMillis, long maxDelayMillis) {
+            firstChange = now;
+            lastChange = now;
+            quietNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, quietMillis));
+            maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        }
+
+        long due() {
+            return Math.min(lastChange + quietNanos, firstChange + maxDelayNanos);
+        }
+    }
+
+    /**
+     * Called after the data of a file has changed. The change must already be made when this is called.
+     */
+    void fileChanged(ReadableWritableDataFile file) {
+        long now = System.nanoTime();
+        PendingSave existing = pending.get(file);
+        if (existing != null) {
+            existing.lastChange = now;
+            return;
+        }
+
+        PendingSave save = new PendingSave(now, file.saveOptions.writeBehindQuietMillis, file.saveOptions.writeBehindMaxDelayMillis);
+        existing = pending.putIfAbsent(file, save);
+        if (existing != null) {
+            existing.lastChange = now;
+            return;
+        }
+        schedule(file, save, save.due() - now);
+    }
+
+    private void schedule(ReadableWritableDataFile file, PendingSave save, long delayNanos) {
+        save.future = executor.schedule(() -> check(file, save), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void check(ReadableWritableDataFile file, PendingSave save) {
+        long wait = save.due() - System.nanoTime();
+        if (wait > 0) { // there were more changes since this was scheduled
+            schedule(file, save, wait);
+            return;
+        }
+
+        // Changes made after this point either get a new PendingSave, or were made before the save below renders the file.
+        if (pending.remove(file, save)) {
+            run(file, file::saveAllData);
+        }
+    }
+
+    /**
+     * Saves a file right away if it has changes waiting to be saved.
+     * If a save of the file on the background thread failed since the last flush, that failure is thrown afterwards,
+     * so that it isn't lost, even if the changes have been saved since.
+     */
+    void flush(ReadableWritableDataFile file) {
+        PendingSave save = pending.remove(file);
+        if (save != null) {
+            ScheduledFuture<?> future = save.future;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        RuntimeException failure = failures.remove(file);
+        try {
+            file.saveAllData();
+        } catch (RuntimeException e) {
+            if (failure != null) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a task for a file after a delay on the write-behind thread. For saves that are due after some time even if nothing changes,
+     * like compacting a journal once it is old enough. If it fails, the failure is thrown from the next flush of the file.
+     */
+    void runLater(ReadableWritableDataFile file, Runnable task, long delayMillis) {
+        executor.schedule(() -> run(file, task), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private void flushAll() {
+        Set<ReadableWritableDataFile> files = new HashSet<>(pending.keySet());
+        files.addAll(failures.keySet());
+        RuntimeException failure = null;
+        for (ReadableWritableDataFile file : files) {
+            try {
+                flush(file);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        // There is no flush() left for these to be thrown from, so they go to the uncaught exception handler of the shutdown hook,
+        // like anything else a thread doesn't catch.
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void run(ReadableWritableDataFile file, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            // nobody is waiting for this save to report to. The changes stay unsaved, so the next change tries again,
+            // and flush() throws the failure, if it doesn't fail again
+            failures.put(file, e);
+        }
+    }
+}
@@ -3,12 +3,16 @@ package com.github.falsepattern.succ4j.datafiles.memoryfiles;
 import com.github.falsepattern.succ4j.datafiles.DataFile;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
 import com.github.falsepattern.succ4j.Utilities;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.parsinglogic.SuccWriter;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.Collections;
 
 /**
  * A read-only version of DataFile. Data can be read from disk, but not saved to disk.
@@ -35,7 +39,11 @@ public class MemoryDataFile extends ReadableWritableDataFile {
     }
 
     public MemoryDataFile(String rawFileText, String identifier, String defaultFileText) {
-        super(defaultFileText);
+        this(rawFileText, identifier, defaultFileText, LoadOptions.defaultOptions);
+    }
+
+    public MemoryDataFile(String rawFileText, String identifier, String defaultFileText, LoadOptions loadOptions) {
+        super(defaultFileText, loadOptions);
         memoryTextData = rawFileText;
         this.identifier = identifier;
         this.reloadAllData();
@@ -81,8 +89,9 @@ public class MemoryDataFile extends ReadableWritableDataFile {
         }
 
         String path = Utilities.absolutePath(relativeOrAbsolutePath);
-        try {
-            Files.write(Paths.get(path), Collections.singleton(getRawText()), StandardOpenOption.TRUNCATE_EXISTING);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(path), StandardOpenOption.TRUNCATE_EXISTING), StandardCharsets.UTF_8)) {
+            SuccWriter.write(getTopLevelLines(), writer);
+            writer.write(System.lineSeparator());
         } catch (IOException e) {
             throw new RuntimeException("Error writing file " + path, e);
         }
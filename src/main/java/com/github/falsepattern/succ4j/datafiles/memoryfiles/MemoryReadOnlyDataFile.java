@@ -2,6 +2,7 @@ package com.github.falsepattern.succ4j.datafiles.memoryfiles;
 
 import com.github.falsepattern.succ4j.datafiles.ReadOnlyDataFile;
 import com.github.falsepattern.succ4j.Utilities;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
 
 import java.io.IOException;
@@ -32,7 +33,11 @@ public class MemoryReadOnlyDataFile extends ReadableDataFile {
     }
 
     public MemoryReadOnlyDataFile(String rawFileText, String identifier, String defaultFileText) {
-        super(defaultFileText);
+        this(rawFileText, identifier, defaultFileText, LoadOptions.defaultOptions);
+    }
+
+    public MemoryReadOnlyDataFile(String rawFileText, String identifier, String defaultFileText, LoadOptions loadOptions) {
+        super(defaultFileText, loadOptions);
         memoryTextData = rawFileText;
         this.identifier = identifier;
         this.reloadAllData();
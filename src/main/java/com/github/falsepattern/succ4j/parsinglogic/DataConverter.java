@@ -1,16 +1,23 @@
 package com.github.falsepattern.succ4j.parsinglogic;
 
-import com.github.falsepattern.util.FalseUtil;
 import com.github.falsepattern.util.Pair;
 import com.github.falsepattern.succ4j.parsinglogic.nodes.*;
-import com.github.falsepattern.succ4j.Utilities;
-import com.github.falsepattern.succ4j.datafiles.DataFile;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableDataFile;
-
+import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.*;
-
-import static com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions.getIndentationLevel;
-import static com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions.splitIntoLines;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class DataConverter {
 
@@ -18,56 +25,248 @@ public class DataConverter {
      * Turns a data structure into raw SUCC
      */
     public static String succFromDataStructure(List<Line> lines) {
-        StringBuilder succBuilder = new StringBuilder();
-        recursivelyBuildLines(lines, succBuilder);
-        return FalseUtil.trimEnd(succBuilder.toString());
-    }
-
-    private static void recursivelyBuildLines(List<Line> lines, StringBuilder builder) {
-        for (Line line : lines) {
-            builder.append(line.rawText);
-            builder.append(Utilities.getNewLine());
-
-            if (line instanceof Node) {
-                Node node = (Node) line;
-                recursivelyBuildLines(node.getChildLines(), builder);
-            }
+        StringWriter succ = new StringWriter();
+        try {
+            SuccWriter.write(lines, succ);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't happen, StringWriter doesn't throw", e);
         }
+        return succ.toString();
     }
 
     /**
      * Parses a string of SUCC into a data structure.
+     * The lines of the data structure are ranges of the input string, so they don't need a String each.
      */
     public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(String input, ReadableDataFile fileRef) {
-        return dataStructureFromSUCC(splitIntoLines(input), fileRef);
+        StructureBuilder builder = new StructureBuilder(fileRef);
+        forEachLine(input, 0, input.length(), builder::addLine);
+        return builder.build();
+    }
+
+    /**
+     * Parses the lines of SUCC that are nested under a node, and adds them to the node as its children.
+     * @param firstLineNumber The number of the first line in the whole file, counting from 0, so that errors point at the right line.
+     * @param file The file the node is part of, or null if it is a read-only file.
+     */
+    public static void addChildrenFromSUCC(Node parent, String input, int firstLineNumber, ReadableWritableDataFile file) {
+        StructureBuilder builder = new StructureBuilder(file, parent, firstLineNumber);
+        forEachLine(input, 0, input.length(), builder::addLine);
     }
 
     /**
      * Parses lines of SUCC into a data structure.
      */
     public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(String[] lines, ReadableDataFile fileRef) {
-        // If the file is empty
-        // Do this because otherwise new files are created with a newline at the top
-        if (lines.length == 1 && lines[0].equals("")) {
-            return new Pair<>(new ArrayList<>(), new HashMap<>());
+        // the lines are copied into a single buffer, so that the lines of the data structure can all share it
+        int length = lines.length;
+        for (String line : lines) {
+            length += line.length();
         }
 
-        List<Line> topLevelLines = new ArrayList<>();
-        Map<String, KeyNode> topLevelNodes = new HashMap<>();
-
-        Stack<Node> nestingNodeStack = new Stack<>(); // The top of the stack is the node that new nodes should be children of
-        boolean doingMultiLineString = false;
+        TextBuffer text = new TextBuffer(length);
+        StructureBuilder builder = new StructureBuilder(fileRef);
+        for (String line : lines) {
+            int start = text.length();
+            text.append(line.toCharArray(), 0, line.length());
+            builder.addLine(text, start, text.length());
+            text.append('\n');
+        }
+        return builder.build();
+    }
 
-        DataFile file = null; // This will be null if fileRef is a ReadOnlyDataFile
+    /**
+     * Parses SUCC from a reader into a data structure, line by line.
+     * The text is read into a single buffer that all the lines of the data structure share. The reader is not closed.
+     */
+    public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(Reader input, ReadableDataFile fileRef) {
+        SuccLineReader reader = new SuccLineReader(input);
+        StructureBuilder builder = new StructureBuilder(fileRef);
         try {
-            file = (DataFile) fileRef;
-        } catch (ClassCastException ignored) {}
+            while (reader.nextLine()) {
+                builder.addLine(reader.getText(), reader.getLineStart(), reader.getLineEnd());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading SUCC data", e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses SUCC from a stream into a data structure, line by line. The stream is not closed.
+     */
+    public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(InputStream input, Charset charset, ReadableDataFile fileRef) {
+        return dataStructureFromSUCC(new InputStreamReader(input, charset), fileRef);
+    }
+
+    /**
+     * Parses SUCC from a channel into a data structure, line by line. The channel is not closed.
+     */
+    public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(ReadableByteChannel input, Charset charset, ReadableDataFile fileRef) {
+        return dataStructureFromSUCC(Channels.newReader(input, charset.newDecoder(), -1), fileRef);
+    }
+
+    /**
+     * Parses UTF-8 encoded SUCC into a data structure, working directly on the bytes (for example those of a memory-mapped file).
+     * Lines are found and classified at the byte level, and each line is decoded straight out of the buffer
+     * into the text that all the lines of the data structure share, so the data structure doesn't keep the buffer.
+     * The position of the buffer is not changed.
+     */
+    public static Pair<List<Line>, Map<String, KeyNode>> dataStructureFromSUCC(ByteBuffer utf8Input, ReadableDataFile fileRef) {
+        Utf8LineScanner scanner = new Utf8LineScanner(utf8Input);
+        TextBuffer text = new TextBuffer(utf8Input.remaining());
+        StructureBuilder builder = new StructureBuilder(fileRef);
+        while (scanner.nextLine()) {
+            int first = scanner.firstSignificantByte;
+            boolean hasData = first != -1 && first != '#';
+            DataLineType dataType;
+            if (!hasData) {
+                dataType = DataLineType.none;
+            } else if (first == '-') {
+                dataType = DataLineType.list;
+            } else if (scanner.containsColon) {
+                dataType = DataLineType.key;
+            } else {
+                dataType = DataLineType.none;
+            }
+
+            int start = scanner.decodeLineInto(text);
+            builder.addLine(text, start, text.length(), scanner.indentation, scanner.containsTab, hasData, dataType);
+            text.append('\n'); // keeps the lines of a section contiguous and separated, the same as in the original text
+        }
+        return builder.build();
+    }
+
+    private interface LineConsumer {
+        void accept(CharSequence source, int start, int end);
+    }
+
+    /**
+     * Splits a range of text into lines the same way as {@link ParsingLogicExtensions#splitIntoLines(String)}:
+     * \r\n, \r and \n all end a line, and whatever comes after the last line ending is always a line of its own, even if it is empty.
+     */
+    private static void forEachLine(CharSequence text, int start, int end, LineConsumer consumer) {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                consumer.accept(text, lineStart, i);
+                if (c == '\r' && i + 1 < end && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        consumer.accept(text, lineStart, end);
+    }
+
+    /**
+     * Builds the data structure of a SUCC file out of its lines, which are fed to it one at a time in order.
+     */
+    private static class StructureBuilder {
+        private final List<Line> topLevelLines = new ArrayList<>();
+        private final Map<String, KeyNode> topLevelNodes = new HashMap<>();
+
+        private final Stack<Node> nestingNodeStack = new Stack<>(); // The top of the stack is the node that new nodes should be children of
+        private boolean doingMultiLineString = false;
+
+        private final ReadableWritableDataFile file; // This will be null if fileRef is a read-only file
+        private int lineCount = 0;
+        private boolean firstLineEmpty = false;
+
+        // In lazy mode, only top-level lines are parsed. The lines nested under a top-level node are collected into an UnparsedSection instead.
+        private final boolean lazy;
+        private UnparsedSection openSection = null;
+        private boolean sectionInMultiLineString = false;
+
+        // In parallel mode, the file is split up like in lazy mode, and then all the sections are parsed at once in build().
+        private final LoadOptions parallelOptions;
+        private final List<UnparsedSection> sections = new ArrayList<>();
+        private RuntimeException scanError = null;
+
+        StructureBuilder(ReadableDataFile fileRef) {
+            this.file = fileRef instanceof ReadableWritableDataFile ? (ReadableWritableDataFile) fileRef : null;
+            LoadOptions options = fileRef != null ? fileRef.loadOptions : null;
+            this.lazy = options != null && (options.lazy || options.parallel);
+            this.parallelOptions = options != null && options.parallel && !options.lazy ? options : null;
+        }
+
+        /**
+         * Creates a builder for lines that are nested under an existing node, starting at the given line number of the file.
+         */
+        StructureBuilder(ReadableWritableDataFile file, Node parent, int firstLineNumber) {
+            this.file = file;
+            this.lazy = false;
+            this.parallelOptions = null;
+            this.lineCount = firstLineNumber;
+            nestingNodeStack.push(parent);
+            doingMultiLineString = parent.childNodeType == NodeChildrenType.multiLineString;
+        }
+
+        /**
+         * Adds the line that is found in a range of some text. The text must never change afterwards.
+         */
+        void addLine(CharSequence source, int start, int end) {
+            int indentation = 0;
+            while (start + indentation < end && source.charAt(start + indentation) == ' ') {
+                indentation++;
+            }
+
+            char first = 0;
+            boolean containsColon = false;
+            boolean containsTab = false;
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (first == 0 && c > ' ') {
+                    first = c;
+                }
+                if (c == ':') {
+                    containsColon = true;
+                } else if (c == '\t') {
+                    containsTab = true;
+                }
+            }
+
+            boolean hasData = first != 0 && first != '#';
+            DataLineType dataType;
+            if (!hasData) {
+                dataType = DataLineType.none;
+            } else if (first == '-') {
+                dataType = DataLineType.list;
+            } else if (containsColon) {
+                dataType = DataLineType.key;
+            } else {
+                dataType = DataLineType.none;
+            }
 
-        // Parse the input line by line
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            if (line.contains("\t")) {
-                throw new IllegalArgumentException("A SUCC file cannot contain tabs. Please use spaces instead.");
+            addLine(source, start, end, indentation, containsTab, hasData, dataType);
+        }
+
+        /**
+         * Adds a line that has already been classified.
+         */
+        void addLine(CharSequence source, int start, int end, int lineIndentation, boolean containsTab, boolean hasData, DataLineType dataType) {
+            if (scanError != null) {
+                return;
+            }
+
+            int i = lineCount++;
+            if (i == 0) {
+                firstLineEmpty = start == end;
+            }
+
+            if (containsTab) {
+                fail(new IllegalArgumentException("A SUCC file cannot contain tabs. Please use spaces instead."));
+                return;
+            }
+
+            if (lazy) {
+                try {
+                    addLineLazily(source, start, end, i, lineIndentation, hasData, dataType);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+                return;
             }
 
             if (doingMultiLineString) {
@@ -75,33 +274,32 @@ public class DataConverter {
                     throw new RuntimeException("We were supposed to be doing a multi-line string but the top of the node stack isn't a multi-line string node!");
                 }
 
-                MultiLineStringNode newNode = new MultiLineStringNode(line, file);
+                MultiLineStringNode newNode = new MultiLineStringNode(source, start, end, file);
 
-                nestingNodeStack.peek().addChild(newNode);
+                nestingNodeStack.peek().addLoadedChild(newNode);
 
                 if (newNode.isTerminator()) {
                     doingMultiLineString = false;
                     nestingNodeStack.pop();
                 }
 
-                continue;
+                return;
             }
 
-            if (lineHasData(line)) {
-                Node node = getNodeFromLine(line, file);
+            if (hasData) {
+                Node node = getNodeFromLine(source, start, end, dataType, file);
 
 
                 while (true) {
                     if (nestingNodeStack.size() == 0) { // If this is a top-level node
                         if (!(node instanceof KeyNode)) {
-                            throw new IllegalArgumentException("Top level lines must be key nods. Line " + i + " does not conform to this: '" + line + "'");
+                            throw new IllegalArgumentException("Top level lines must be key nods. Line " + i + " does not conform to this: '" + source.subSequence(start, end) + "'");
                         }
                         topLevelLines.add(node);
                         KeyNode heck = (KeyNode) node;
                         topLevelNodes.put(heck.getKey(), heck);
                     } else { // If this is NOT a top-level node
                         int stackTopIndentation = nestingNodeStack.peek().getIndentationLevel();
-                        int lineIndentation = getIndentationLevel(line);
 
                         if (lineIndentation > stackTopIndentation) { // If this should be a child of the stack top
                             Node newParent = nestingNodeStack.peek();
@@ -117,7 +315,7 @@ public class DataConverter {
                                 checkNewSiblingForErrors(node, newParent);
                             }
 
-                            newParent.addChild(node);
+                            newParent.addLoadedChild(node);
                         } else { // If this should NOT be a child of the stack top
                             nestingNodeStack.pop();
                             continue;
@@ -134,37 +332,282 @@ public class DataConverter {
                     doingMultiLineString = true;
                 }
             } else { // Line has no data
-                Line noDataLine = new Line(line);
+                Line noDataLine = new Line(source, start, end);
 
                 if (nestingNodeStack.size() == 0) {
                     topLevelLines.add(noDataLine);
                 } else {
-                    nestingNodeStack.peek().addChild(noDataLine);
+                    nestingNodeStack.peek().addLoadedChild(noDataLine);
+                }
+            }
+        }
+
+        private void addLineLazily(CharSequence source, int start, int end, int i, int lineIndentation, boolean hasData, DataLineType dataType) {
+            if (openSection != null) {
+                if (sectionInMultiLineString) {
+                    openSection.addLine(source, start, end);
+                    if (new MultiLineStringNode(source, start, end, file).isTerminator()) {
+                        sectionInMultiLineString = false;
+                        if (openSection.parent.childNodeType == NodeChildrenType.multiLineString) { // the top-level node itself was the multi-line string
+                            openSection = null;
+                        }
+                    }
+                    return;
+                }
+
+                if (!hasData || lineIndentation > openSection.parent.getIndentationLevel()) { // the line is nested under the top-level node
+                    openSection.addLine(source, start, end);
+                    if (hasData && dataType != DataLineType.none) {
+                        if (openSection.parent.childNodeType == NodeChildrenType.none) { // the first child decides the child type, same as in a full parse
+                            openSection.parent.childNodeType = dataType == DataLineType.key ? NodeChildrenType.key : NodeChildrenType.list;
+                        }
+
+                        // a nested multi-line string takes every line until its terminator, no matter how they're indented
+                        if (rangeContains(source, start, end, MultiLineStringNode.terminator) && getNodeFromLine(source, start, end, dataType, file).getValue().equals(MultiLineStringNode.terminator)) {
+                            sectionInMultiLineString = true;
+                        }
+                    }
+                    return;
+                }
+
+                openSection = null;
+            }
+
+            if (!hasData) {
+                topLevelLines.add(new Line(source, start, end));
+                return;
+            }
+
+            Node node = getNodeFromLine(source, start, end, dataType, file);
+            if (!(node instanceof KeyNode)) {
+                throw new IllegalArgumentException("Top level lines must be key nods. Line " + i + " does not conform to this: '" + source.subSequence(start, end) + "'");
+            }
+            topLevelLines.add(node);
+            KeyNode heck = (KeyNode) node;
+            topLevelNodes.put(heck.getKey(), heck);
+
+            if (node.getValue().equals("")) {
+                openSection(node, i + 1);
+            } else if (node.getValue().equals(MultiLineStringNode.terminator)) {
+                node.childNodeType = NodeChildrenType.multiLineString;
+                openSection(node, i + 1);
+                sectionInMultiLineString = true;
+            }
+        }
+
+        private void openSection(Node node, int firstLineNumber) {
+            openSection = new UnparsedSection(node, firstLineNumber, file);
+            if (parallelOptions != null) {
+                sections.add(openSection);
+            }
+        }
+
+        /**
+         * When sections are parsed in parallel, an error found while splitting up the file has to wait until the sections before it
+         * have been parsed, so that the error that gets thrown is the same one a sequential parse would have thrown.
+         */
+        private void fail(RuntimeException error) {
+            if (parallelOptions == null) {
+                throw error;
+            }
+            scanError = error;
+        }
+
+        Pair<List<Line>, Map<String, KeyNode>> build() {
+            if (parallelOptions != null) {
+                loadSections(sections, parallelOptions);
+                if (scanError != null) {
+                    throw scanError;
+                }
+            }
+
+            // If the file is empty
+            // Do this because otherwise new files are created with a newline at the top
+            if (lineCount == 1 && firstLineEmpty) {
+                return new Pair<>(new ArrayList<>(), new HashMap<>());
+            }
+
+            return new Pair<>(topLevelLines, topLevelNodes);
+        }
+    }
+
+    /**
+     * Parses the sections of a parallel load, using the fork/join pool from the options if the file is big enough to be worth it.
+     * If parsing fails, the error of the first section that failed is thrown.
+     */
+    private static void loadSections(List<UnparsedSection> sections, LoadOptions options) {
+        int lineCount = 0;
+        for (UnparsedSection section : sections) {
+            lineCount += section.lineCount;
+        }
+
+        RuntimeException[] errors = new RuntimeException[sections.size()];
+        if (lineCount < options.parallelThreshold) {
+            new SectionLoadTask(sections, errors, 0, sections.size(), Integer.MAX_VALUE).compute();
+        } else {
+            ForkJoinPool pool = options.parallelPool != null ? options.parallelPool : ForkJoinPool.commonPool();
+            int linesPerTask = Math.max(minimumLinesPerTask, lineCount / (pool.getParallelism() * 4));
+            pool.invoke(new SectionLoadTask(sections, errors, 0, sections.size(), linesPerTask));
+        }
+
+        for (RuntimeException error : errors) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static final int minimumLinesPerTask = 1024;
+
+    private static class SectionLoadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<UnparsedSection> sections;
+        private final RuntimeException[] errors;
+        private final int start;
+        private final int end;
+        private final int linesPerTask;
+
+        SectionLoadTask(List<UnparsedSection> sections, RuntimeException[] errors, int start, int end, int linesPerTask) {
+            this.sections = sections;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+            this.linesPerTask = linesPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int lineCount = 0;
+                for (int i = start; i < end && lineCount <= linesPerTask; i++) {
+                    lineCount += sections.get(i).lineCount;
+                }
+
+                if (lineCount > linesPerTask) {
+                    int middle = (start + end) >>> 1;
+                    invokeAll(new SectionLoadTask(sections, errors, start, middle, linesPerTask),
+                              new SectionLoadTask(sections, errors, middle, end, linesPerTask));
+                    return;
                 }
             }
+
+            for (int i = start; i < end; i++) {
+                UnparsedSection section = sections.get(i);
+                try {
+                    section.parent.getChildLines(); // loads the section
+                } catch (RuntimeException e) {
+                    errors[i] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * The lines nested under a top-level node, collected but not parsed by a lazy load.
+     * They are always next to each other in the text of the file, so they are stored as a single range of it.
+     */
+    private static class UnparsedSection implements LazyChildren {
+        private final Node parent;
+        private final int firstLineNumber;
+        private final ReadableWritableDataFile file;
+        private CharSequence source = null;
+        private int start;
+        private int end;
+        private int lineCount = 0;
+
+        UnparsedSection(Node parent, int firstLineNumber, ReadableWritableDataFile file) {
+            this.parent = parent;
+            this.firstLineNumber = firstLineNumber;
+            this.file = file;
+            parent.setUnloadedChildren(this);
+        }
+
+        void addLine(CharSequence source, int start, int end) {
+            if (lineCount++ == 0) {
+                this.source = source;
+                this.start = start;
+            }
+            this.end = end;
+        }
+
+        @Override
+        public void loadInto(Node node) {
+            if (lineCount == 0) {
+                return;
+            }
+            StructureBuilder builder = new StructureBuilder(file, node, firstLineNumber);
+            forEachLine(source, start, end, builder::addLine);
         }
 
-        return new Pair<>(topLevelLines, topLevelNodes);
+        @Override
+        public int getSourceEnd(CharSequence source) {
+            if (lineCount == 0) {
+                return parent.getSource() == source ? parent.getSourceEnd() : -1;
+            }
+            return this.source == source ? end : -1;
+        }
+
+        @Override
+        public Iterable<String> getRawLines() {
+            // the lines are split off one at a time as they are iterated over, so that they never all exist at once
+            return () -> new Iterator<String>() {
+                private int position = start;
+                private int remaining = lineCount;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public String next() {
+                    if (remaining <= 0) {
+                        throw new NoSuchElementException();
+                    }
+                    remaining--;
+
+                    int lineStart = position;
+                    int lineEnd = lineStart;
+                    while (lineEnd < end && source.charAt(lineEnd) != '\n' && source.charAt(lineEnd) != '\r') {
+                        lineEnd++;
+                    }
+
+                    position = lineEnd + 1;
+                    if (lineEnd + 1 < end && source.charAt(lineEnd) == '\r' && source.charAt(lineEnd + 1) == '\n') {
+                        position++;
+                    }
+                    return source.subSequence(lineStart, lineEnd).toString();
+                }
+            };
+        }
     }
 
-    private static boolean lineHasData(String line) {
-        line = line.trim();
-        return line.length() != 0 && line.charAt(0) != '#';
+    private static boolean rangeContains(CharSequence source, int start, int end, String s) {
+        for (int i = start, last = end - s.length(); i <= last; i++) {
+            int j = 0;
+            while (j < s.length() && source.charAt(i + j) == s.charAt(j)) {
+                j++;
+            }
+            if (j == s.length()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static Node getNodeFromLine(String line, DataFile file) {
-        DataLineType dataType = getDataLineType(line);
+    private static Node getNodeFromLine(CharSequence source, int start, int end, DataLineType dataType, ReadableWritableDataFile file) {
         Node node;
         switch (dataType) {
             case key:
-                node = new KeyNode(line, file);
+                node = new KeyNode(source, start, end, file);
                 break;
             case list:
-                node = new ListNode(line, file);
+                node = new ListNode(source, start, end, file);
                 break;
 
             default:
-                throw new IllegalArgumentException("Format error on line: " + line);
+                throw new IllegalArgumentException("Format error on line: " + source.subSequence(start, end));
         }
 
         return node;
@@ -173,7 +616,7 @@ public class DataConverter {
     private static void checkNewSiblingForErrors(Node child, Node newParent) {
         Node sibling = newParent.getChildNodes().get(0);
         if (child.getIndentationLevel() != sibling.getIndentationLevel()) { // if there is a mismatch between the new node's indentation and its sibling's
-            throw new IllegalArgumentException("Line did not have the same indentation as its assumed sibling. Line was '" + child.rawText + "'; sibling was '" + sibling.rawText + "'");
+            throw new IllegalArgumentException("Line did not have the same indentation as its assumed sibling. Line was '" + child.getRawText() + "'; sibling was '" + sibling.getRawText() + "'");
         }
 
         if ( // if there is a mismatch between the new node's type and its sibling's
@@ -182,21 +625,11 @@ public class DataConverter {
              || newParent.childNodeType == NodeChildrenType.multiLineString
              || newParent.childNodeType == NodeChildrenType.none
         ) {
-            throw new IllegalArgumentException("Line did not match the child type of it's parent. Line was '" + child.rawText + "'; parent was '" + newParent.rawText + "'");
+            throw new IllegalArgumentException("Line did not match the child type of it's parent. Line was '" + child.getRawText() + "'; parent was '" + newParent.getRawText() + "'");
         }
     }
 
     private enum DataLineType {
         none, key, list
     }
-
-    private static DataLineType getDataLineType(String line) {
-        String trimmed = line.trim();
-        if (trimmed.length() == 0) return DataLineType.none;
-        if (trimmed.charAt(0) == '#') return DataLineType.none;
-        if (trimmed.charAt(0) == '-') return DataLineType.list;
-        if (trimmed.contains(":")) return DataLineType.key;
-
-        return DataLineType.none;
-    }
 }
@@ -3,6 +3,8 @@ package com.github.falsepattern.succ4j.parsinglogic;
 import com.github.falsepattern.util.reflectionhelper.ClassTree;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ParsingLogicExtensions {
     public static String quote(String s) {
@@ -48,9 +50,22 @@ public class ParsingLogicExtensions {
     }
 
     public static String[] splitIntoLines(String s) {
-        return s.replace("\r\n", "\n") //windows line endings
-                .replace("\r", "\n") //classic macOS line endings
-                .split("\n", -1);
+        // single pass over the string; \r\n (windows) and \r (classic macOS) are handled like \n
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(s.substring(lineStart, i));
+                if (c == '\r' && i + 1 < length && s.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        lines.add(s.substring(lineStart));
+        return lines.toArray(new String[0]);
     }
 
     public static boolean containsNewLine(String s) {
@@ -0,0 +1,141 @@
+package com.github.falsepattern.succ4j.parsinglogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits SUCC text coming from a {@link Reader} into lines in a single pass.
+ * Line endings are treated the same way as in {@link ParsingLogicExtensions#splitIntoLines(String)}: \r\n, \r and \n all end a line,
+ * and whatever comes after the last line ending is always returned as the final line, even if it is empty.
+ * <p>
+ * Everything that is read is kept in one {@link TextBuffer}, and {@link #nextLine()} only reports where each line starts and ends in it,
+ * so lines can be used as ranges of that buffer without creating a String for each of them.
+ */
+public class SuccLineReader implements Closeable {
+    private static final int defaultBufferSize = 8192;
+
+    private final Reader reader;
+    private final int readSize;
+    private final TextBuffer text = new TextBuffer();
+    private int position = 0;
+    private boolean skipLineFeed = false;
+    private boolean endOfInput = false;
+    private boolean finished = false;
+
+    private int lineStart;
+    private int lineEnd;
+
+    public SuccLineReader(Reader reader) {
+        this(reader, defaultBufferSize);
+    }
+
+    public SuccLineReader(Reader reader, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1. You tried to set it to " + bufferSize);
+        }
+        this.reader = reader;
+        this.readSize = bufferSize;
+    }
+
+    /**
+     * Moves to the next line. Its position in {@link #getText()} is then given by {@link #getLineStart()} and {@link #getLineEnd()}.
+     * @return False if the end of the input was already reached.
+     */
+    public boolean nextLine() throws IOException {
+        if (finished) {
+            return false;
+        }
+
+        while (true) {
+            if (position >= text.length() && !fill()) {
+                finished = true;
+                lineStart = position;
+                lineEnd = position;
+                return true;
+            }
+
+            if (skipLineFeed) { // the previous line ended with \r, so a \n directly after it belongs to the same line ending
+                skipLineFeed = false;
+                if (text.charAt(position) == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            break;
+        }
+
+        lineStart = position;
+        while (true) {
+            char[] chars = text.array();
+            int limit = text.length();
+            while (position < limit) {
+                char c = chars[position];
+                if (c == '\n' || c == '\r') {
+                    lineEnd = position;
+                    position++;
+                    skipLineFeed = c == '\r';
+                    return true;
+                }
+                position++;
+            }
+
+            if (!fill()) {
+                finished = true;
+                lineEnd = position;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads the next line, without its line ending.
+     * @return The next line, or null if the end of the input was already reached.
+     */
+    public String readLine() throws IOException {
+        if (!nextLine()) {
+            return null;
+        }
+        return text.subSequence(lineStart, lineEnd);
+    }
+
+    /**
+     * All the text that has been read so far.
+     */
+    public TextBuffer getText() {
+        return text;
+    }
+
+    /**
+     * Where the current line starts in {@link #getText()}.
+     */
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Where the current line ends in {@link #getText()}, not counting its line ending.
+     */
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    private boolean fill() throws IOException {
+        while (!endOfInput) {
+            text.ensureFree(readSize);
+            int read = reader.read(text.array(), text.length(), readSize);
+            if (read < 0) {
+                endOfInput = true;
+            } else if (read > 0) {
+                text.setLength(text.length() + read);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.falsepattern.succ4j.parsinglogic;
+
+import com.github.falsepattern.succ4j.Utilities;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.LazyChildren;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Turns a data structure into raw SUCC, writing it straight to a {@link Writer} instead of building the whole text in memory first.
+ * The output is exactly what {@link DataConverter#succFromDataStructure(List)} returns: whitespace at the very end of the text is left out.
+ * Since there is no way to know whether some whitespace is at the end until something else comes after it, whitespace is held back
+ * until then, and thrown away by {@link #finish()}.
+ * <p>
+ * Nodes that haven't changed since they were parsed are written as the range of text they were parsed from, all their children included,
+ * so the cost of saving a file mostly depends on how much of it has changed.
+ */
+public class SuccWriter implements Closeable, Flushable {
+    private final Writer out;
+    private final String newLine = Utilities.getNewLine();
+    private final StringBuilder lineText = new StringBuilder();
+    private final StringBuilder heldBackWhitespace = new StringBuilder();
+    private final char[] buffer = new char[1024];
+
+    public SuccWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes lines of a data structure, along with all of their children.
+     */
+    public SuccWriter writeLines(List<Line> lines) throws IOException {
+        for (Line line : lines) {
+            if (line instanceof Node) {
+                Node node = (Node) line;
+                int subtreeEnd = node.getUnmodifiedSubtreeEnd(newLine);
+                if (subtreeEnd >= 0) {
+                    writeText(node.getSource(), node.getSourceStart(), subtreeEnd);
+                    continue;
+                }
+            }
+
+            lineText.setLength(0);
+            line.appendRawText(lineText);
+            writeText(lineText, 0, lineText.length());
+
+            if (line instanceof Node) {
+                Node node = (Node) line;
+                LazyChildren unloadedChildren = node.getUnloadedChildren();
+                if (unloadedChildren != null) { // no need to parse children just to turn them back into text
+                    for (String rawLine : unloadedChildren.getRawLines()) {
+                        writeText(rawLine, 0, rawLine.length());
+                    }
+                } else {
+                    writeLines(node.getChildLines());
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes a range of text that is one or more whole lines, separated by {@link #newLine}, and followed by another one.
+     */
+    private void writeText(CharSequence text, int start, int end) throws IOException {
+        int lastVisible = end - 1;
+        while (lastVisible >= start && text.charAt(lastVisible) <= ' ') {
+            lastVisible--;
+        }
+
+        if (lastVisible >= start) {
+            if (heldBackWhitespace.length() > 0) {
+                out.append(heldBackWhitespace);
+                heldBackWhitespace.setLength(0);
+            }
+            writeChars(text, start, lastVisible + 1);
+        }
+
+        heldBackWhitespace.append(text, lastVisible + 1, end);
+        heldBackWhitespace.append(newLine);
+    }
+
+    private void writeChars(CharSequence text, int start, int end) throws IOException {
+        if (text instanceof String) {
+            out.write((String) text, start, end - start);
+        } else if (text instanceof TextBuffer) {
+            out.write(((TextBuffer) text).array(), start, end - start);
+        } else {
+            while (start < end) {
+                int count = Math.min(end - start, buffer.length);
+                if (text instanceof StringBuilder) {
+                    ((StringBuilder) text).getChars(start, start + count, buffer, 0);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        buffer[i] = text.charAt(start + i);
+                    }
+                }
+                out.write(buffer, 0, count);
+                start += count;
+            }
+        }
+    }
+
+    /**
+     * How many characters of whitespace are being held back, because nothing visible has come after them yet.
+     * Whitespace is always ASCII, so this is also how many bytes they are in UTF-8.
+     */
+    public int getHeldBackLength() {
+        return heldBackWhitespace.length();
+    }
+
+    /**
+     * Writes the whitespace that is being held back, as if something visible came after it.
+     * This is for writing a part of a text that isn't its end.
+     */
+    public void writeHeldBackWhitespace() throws IOException {
+        out.append(heldBackWhitespace);
+        heldBackWhitespace.setLength(0);
+    }
+
+    /**
+     * Ends the text. The whitespace at the end of it is thrown away, and everything else is flushed to the writer.
+     */
+    public void finish() throws IOException {
+        heldBackWhitespace.setLength(0);
+        out.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Finishes the text and closes the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    /**
+     * Writes a data structure to a writer as raw SUCC. The writer is flushed, but not closed.
+     */
+    public static void write(List<Line> lines, Writer out) throws IOException {
+        new SuccWriter(out).writeLines(lines).finish();
+    }
+
+    /**
+     * Writes a data structure to a stream as raw SUCC. The stream is flushed, but not closed.
+     */
+    public static void write(List<Line> lines, OutputStream out, Charset charset) throws IOException {
+        write(lines, new OutputStreamWriter(out, charset));
+    }
+
+    /**
+     * Writes a data structure to a channel as raw SUCC. The channel is not closed.
+     */
+    public static void write(List<Line> lines, WritableByteChannel out, Charset charset) throws IOException {
+        write(lines, Channels.newWriter(out, charset.newEncoder(), -1));
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.falsepattern.succ4j.parsinglogic;
+
+import java.util.Arrays;
+
+/**
+ * The text of a whole SUCC file in a single growable char array.
+ * While a file is being parsed, its lines are stored as ranges of one of these instead of as a String each.
+ * Text is only ever appended to a TextBuffer, so a range that was handed out never changes.
+ */
+public class TextBuffer implements CharSequence {
+    private char[] chars;
+    private int length = 0;
+
+    public TextBuffer() {
+        this(1024);
+    }
+
+    public TextBuffer(int initialCapacity) {
+        chars = new char[Math.max(16, initialCapacity)];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public String subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("Invalid range " + start + " to " + end + " in text of length " + length);
+        }
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    public void append(char c) {
+        ensureFree(1);
+        chars[length++] = c;
+    }
+
+    public void append(char[] source, int offset, int count) {
+        ensureFree(count);
+        System.arraycopy(source, offset, chars, length, count);
+        length += count;
+    }
+
+    /**
+     * Copies a range of this text to the end of a StringBuilder, without creating a String for it.
+     */
+    public void appendTo(StringBuilder builder, int start, int end) {
+        builder.append(chars, start, end - start);
+    }
+
+    // The methods below let readers and decoders write straight into the array, to avoid copying everything through a second buffer.
+
+    /**
+     * Makes sure at least this many chars can be written into {@link #array()} after {@link #length()}.
+     */
+    void ensureFree(int count) {
+        if (chars.length - length < count) {
+            chars = Arrays.copyOf(chars, Math.max(length + count, chars.length * 2));
+        }
+    }
+
+    char[] array() {
+        return chars;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+}
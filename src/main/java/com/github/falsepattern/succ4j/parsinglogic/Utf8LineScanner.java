@@ -0,0 +1,133 @@
+package com.github.falsepattern.succ4j.parsinglogic;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the lines of UTF-8 encoded SUCC text directly in a {@link ByteBuffer}, such as a memory-mapped file.
+ * Line endings, indentation and the characters that decide what kind of line it is are all found on the raw bytes;
+ * this works because every byte of a multi-byte UTF-8 character is above 0x7F, so it can never be mistaken for one of them.
+ * The text of a line is only decoded when {@link #decodeLineInto(TextBuffer)} is called, which the parser does for every line.
+ */
+class Utf8LineScanner {
+    private final ByteBuffer input;
+    private final int end;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private int next;
+    private boolean finished = false;
+
+    // information about the current line
+    int lineStart;
+    int lineEnd;
+    int indentation;
+    /** The first byte that is not whitespace (as an unsigned value), or -1 if the whole line is whitespace. */
+    int firstSignificantByte;
+    boolean containsColon;
+    boolean containsTab;
+
+    Utf8LineScanner(ByteBuffer input) {
+        this.input = input;
+        this.next = input.position();
+        this.end = input.limit();
+    }
+
+    /**
+     * Moves to the next line. Like {@link ParsingLogicExtensions#splitIntoLines(String)}, \r\n, \r and \n all end a line,
+     * and whatever comes after the last line ending is always a line of its own, even if it is empty.
+     * @return False if there are no lines left.
+     */
+    boolean nextLine() {
+        if (finished) {
+            return false;
+        }
+
+        lineStart = next;
+        indentation = 0;
+        firstSignificantByte = -1;
+        containsColon = false;
+        containsTab = false;
+
+        boolean inIndentation = true;
+        int i = lineStart;
+        for (; i < end; i++) {
+            byte b = input.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+
+            if (inIndentation) {
+                if (b == ' ') {
+                    indentation++;
+                } else {
+                    inIndentation = false;
+                }
+            }
+
+            if (firstSignificantByte == -1 && (b & 0xFF) > ' ') {
+                firstSignificantByte = b & 0xFF;
+            }
+
+            if (b == ':') {
+                containsColon = true;
+            } else if (b == '\t') {
+                containsTab = true;
+            }
+        }
+
+        lineEnd = i;
+        if (i >= end) {
+            finished = true;
+        } else if (input.get(i) == '\r' && i + 1 < end && input.get(i + 1) == '\n') {
+            next = i + 2;
+        } else {
+            next = i + 1;
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes the text of the current line, without its line ending, to the end of a {@link TextBuffer}.
+     * The line then ends where the buffer ends.
+     * @return Where the line starts in the buffer.
+     */
+    int decodeLineInto(TextBuffer text) {
+        int start = text.length();
+        int length = lineEnd - lineStart;
+        text.ensureFree(length); // decoded UTF-8 never has more chars than it has bytes
+        char[] chars = text.array();
+
+        for (int i = 0; i < length; i++) {
+            byte b = input.get(lineStart + i);
+            if (b < 0) { // not ascii, so let the real decoder deal with it
+                decodeUtf8(lineStart, lineEnd, text, start);
+                return start;
+            }
+            chars[start + i] = (char) b;
+        }
+        text.setLength(start + length);
+        return start;
+    }
+
+    private void decodeUtf8(int from, int to, TextBuffer text, int start) {
+        ByteBuffer slice = input.duplicate();
+        slice.limit(to);
+        slice.position(from);
+        CharBuffer out = CharBuffer.wrap(text.array(), start, to - from);
+        decoder.reset();
+        CoderResult result = decoder.decode(slice, out, true);
+        if (!result.isUnderflow()) {
+            // can't happen, the decoder replaces bad input and the output has room for a char per byte
+            throw new IllegalStateException("Error while decoding UTF-8 text: " + result);
+        }
+        decoder.flush(out);
+        text.setLength(out.position());
+    }
+}
@@ -3,10 +3,7 @@ package com.github.falsepattern.succ4j.parsinglogic.nodes;
 import com.github.falsepattern.util.Out;
 import com.github.falsepattern.succ4j.Utilities;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
-import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
 
-import static com.github.falsepattern.util.FalseUtil.trimEnd;
-import static com.github.falsepattern.util.FalseUtil.trimStart;
 import static com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions.addSpaces;
 
 /**
@@ -17,6 +14,10 @@ public class KeyNode extends Node {
         super(rawText, file);
     }
 
+    public KeyNode(CharSequence source, int start, int end, ReadableWritableDataFile file) {
+        super(source, start, end, file);
+    }
+
     public KeyNode(int indentation, String key, ReadableWritableDataFile file) {
         super(indentation, file);
 
@@ -27,25 +28,40 @@ public class KeyNode extends Node {
             }
         }
 
-        rawText += key + ":";
+        setRawText(getRawText() + key + ":");
     }
 
     public String getKey() {
-        String text = getDataText();
-        int colonIndex = getColonIndex(text);
-
-        text = text.substring(0, colonIndex);
-        text = trimEnd(text);
-        return text;
+        if (key == null) {
+            key = parseKey();
+        }
+        return key;
     }
 
     @Override
     public String getValue() {
-        String text = getDataText();
-        int colonIndex = getColonIndex(text);
-        text = text.substring(colonIndex + 1);
-        text = trimStart(text);
-        return text;
+        if (value == null) {
+            value = parseValue();
+        }
+        return value;
+    }
+
+    private String parseKey() {
+        int keyEnd = getColonIndex();
+        int keyStart = getDataStartIndex();
+        while (keyEnd > keyStart && getRawChar(keyEnd - 1) <= ' ') {
+            keyEnd--;
+        }
+        return rawSubstringUnescaped(keyStart, keyEnd);
+    }
+
+    private String parseValue() {
+        int valueStart = getColonIndex() + 1;
+        int valueEnd = getDataEndIndex();
+        while (valueStart < valueEnd && getRawChar(valueStart) <= ' ') {
+            valueStart++;
+        }
+        return rawSubstringUnescaped(valueStart, valueEnd);
     }
 
     @Override
@@ -56,20 +72,40 @@ public class KeyNode extends Node {
             return;
         }
 
-        String text = getDataText();
-        int colonIndex = getColonIndex(text);
-
-        String afterColon = text.substring(colonIndex + 1);
-        int spacesAfterColon = ParsingLogicExtensions.getIndentationLevel(afterColon);
+        int valueStart = getColonIndex() + 1;
+        int valueEnd = getDataEndIndex();
+        while (valueStart < valueEnd && getRawChar(valueStart) == ' ') {
+            valueStart++;
+        }
 
-        setDataText(text.substring(0, colonIndex + spacesAfterColon + 1) + value);
+        setDataText(rawSubstringUnescaped(getDataStartIndex(), valueStart) + value);
     }
 
-    private int getColonIndex(String text) {
-        int colonIndex = text.indexOf(':');
+    // These are worked out from the raw text the first time they're needed, and thrown away whenever the raw text changes.
+    private int colonIndex = -1; // -1 means not calculated yet
+    private String key = null;
+    private String value = null;
+
+    @Override
+    protected void onRawTextChanged() {
+        super.onRawTextChanged();
+        String oldKey = key;
+        colonIndex = -1;
+        key = null;
+        value = null;
 
+        if (oldKey != null && getParent() != null) { // the parent might have this node indexed by its old key
+            getParent().childKeyChanged(this, oldKey);
+        }
+    }
+
+    private int getColonIndex() {
         if (colonIndex < 0) {
-            throw new StringIndexOutOfBoundsException("Key node comprised of the following text: " + rawText + " did not contain the character ':'");
+            int index = indexOfRawChar(':', getDataStartIndex(), getDataEndIndex());
+            if (index < 0) {
+                throw new StringIndexOutOfBoundsException("Key node comprised of the following text: " + getRawText() + " did not contain the character ':'");
+            }
+            colonIndex = index;
         }
         return colonIndex;
     }
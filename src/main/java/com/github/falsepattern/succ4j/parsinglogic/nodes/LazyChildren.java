@@ -0,0 +1,25 @@
+package com.github.falsepattern.succ4j.parsinglogic.nodes;
+
+/**
+ * The children of a {@link Node} that have been read, but not parsed yet.
+ * They are parsed the first time anything asks the node about its children.
+ */
+public interface LazyChildren {
+    /**
+     * Parses the children and adds them to the node.
+     */
+    void loadInto(Node node);
+
+    /**
+     * The text of the children (and everything nested in them) as it appears in the file, one entry per line.
+     */
+    Iterable<String> getRawLines();
+
+    /**
+     * Where the children (and everything nested in them) end in the given text, if they are a range of it that ends there.
+     * Otherwise, this returns -1.
+     */
+    default int getSourceEnd(CharSequence source) {
+        return -1;
+    }
+}
@@ -1,21 +1,179 @@
 package com.github.falsepattern.succ4j.parsinglogic.nodes;
 
 import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
+import com.github.falsepattern.succ4j.parsinglogic.TextBuffer;
 
 /**
  * Represents a single line of text in a SUCC file.
  */
 public class Line {
+    // A line that was parsed from a file doesn't have a String of its own. It is a range of the text of the whole file, which all of
+    // that file's lines share. The line only gets its own String once it is edited.
+    private CharSequence source;
+    private int start;
+    private int end;
+    private int indentation = -1; // -1 means not calculated yet
+    Node parent = null;
+
     public Line() {
-        this.rawText = "";
+        this("");
     }
+
     public Line(String rawText) {
-        this.rawText = rawText;
+        this(rawText, 0, rawText.length());
+    }
+
+    /**
+     * Creates a line out of a range of some larger text. The text must never change afterwards.
+     */
+    public Line(CharSequence source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * The node this line was last added to as a child, or null if it was never added to one.
+     */
+    public Node getParent() {
+        return parent;
+    }
+
+    /**
+     * The text this line is a range of. Once the line has been edited, this is just the text of the line.
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * Where this line starts in {@link #getSource()}.
+     */
+    public int getSourceStart() {
+        return start;
+    }
+
+    /**
+     * Where this line ends in {@link #getSource()}.
+     */
+    public int getSourceEnd() {
+        return end;
+    }
+
+    public String getRawText() {
+        if (source instanceof String && start == 0 && end == source.length()) {
+            return (String) source;
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    public void setRawText(String rawText) {
+        if (rawTextEquals(rawText)) {
+            return;
+        }
+
+        source = rawText;
+        start = 0;
+        end = rawText.length();
+        indentation = -1;
+        onRawTextChanged();
+    }
+
+    private boolean rawTextEquals(String text) {
+        if (text.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called whenever the text of this line changes, so that anything calculated from the old text can be thrown away.
+     */
+    protected void onRawTextChanged() {
+        if (parent != null) {
+            parent.markModified();
+        }
+    }
+
+    public int getRawLength() {
+        return end - start;
+    }
+
+    /**
+     * The character at an index of the raw text. This doesn't need the raw text as a String.
+     */
+    public char getRawChar(int index) {
+        return source.charAt(start + index);
+    }
+
+    /**
+     * Adds the raw text of this line to the end of a StringBuilder. This doesn't need the raw text as a String.
+     */
+    public void appendRawText(StringBuilder builder) {
+        if (source instanceof TextBuffer) {
+            ((TextBuffer) source).appendTo(builder, start, end);
+        } else {
+            builder.append(source, start, end);
+        }
+    }
+
+    /**
+     * Finds the first occurrence of a character in the raw text, between two indexes of it.
+     * @return The index of the character in the raw text, or -1 if it isn't there.
+     */
+    protected int indexOfRawChar(char c, int fromIndex, int toIndex) {
+        for (int i = start + fromIndex, stop = start + toIndex; i < stop; i++) {
+            if (source.charAt(i) == c) {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies part of the raw text into a new String, turning every escaped pound sign back into a regular one.
+     */
+    protected String rawSubstringUnescaped(int fromIndex, int toIndex) {
+        int from = start + fromIndex;
+        int to = start + toIndex;
+        int escape = -1;
+        for (int i = from; i < to - 1; i++) {
+            if (source.charAt(i) == '\\' && source.charAt(i + 1) == '#') {
+                escape = i;
+                break;
+            }
+        }
+
+        if (escape < 0) {
+            return source.subSequence(from, to).toString();
+        }
+
+        StringBuilder builder = new StringBuilder(to - from);
+        builder.append(source, from, escape);
+        for (int i = escape; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '\\' && i + 1 < to && source.charAt(i + 1) == '#') {
+                continue;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
     }
 
-    public String rawText;
     public int getIndentationLevel() {
-        return ParsingLogicExtensions.getIndentationLevel(rawText);
+        if (indentation < 0) {
+            int i = start;
+            while (i < end && source.charAt(i) == ' ') {
+                i++;
+            }
+            indentation = i - start;
+        }
+        return indentation;
     }
 
     public void setIndentationLevel(int value) {
@@ -30,9 +188,9 @@ public class Line {
 
         int diff = value - indent;
         if (diff > 0) {
-            rawText = ParsingLogicExtensions.addIndent(rawText, diff);
+            setRawText(ParsingLogicExtensions.addIndent(getRawText(), diff));
         } else {
-            rawText = rawText.substring(-diff);
+            setRawText(getRawText().substring(-diff));
         }
     }
 }
@@ -1,9 +1,7 @@
 package com.github.falsepattern.succ4j.parsinglogic.nodes;
 
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
-import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
 
-import static com.github.falsepattern.util.FalseUtil.trimStart;
 import static com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions.addSpaces;
 
 /**
@@ -14,20 +12,30 @@ public class ListNode extends Node {
         super(rawText, file);
     }
 
+    public ListNode(CharSequence source, int start, int end, ReadableWritableDataFile file) {
+        super(source, start, end, file);
+    }
+
     public ListNode(int indentation, ReadableWritableDataFile file) {
         super(indentation, file);
-        rawText += "-";
+        setRawText(getRawText() + "-");
     }
 
     @Override
     public String getValue() {
-        String text = getDataText();
-        int dashIndex = getDashIndex(text);
+        if (value == null) {
+            value = parseValue();
+        }
+        return value;
+    }
 
-        text = text.substring(dashIndex + 1);
-        text = trimStart(text);
-        return text;
-        // note that trailing spaces are already trimmed in GetDataText()
+    private String parseValue() {
+        int valueStart = getDashIndex() + 1;
+        int valueEnd = getDataEndIndex(); // note that trailing spaces are already excluded from the data
+        while (valueStart < valueEnd && getRawChar(valueStart) <= ' ') {
+            valueStart++;
+        }
+        return rawSubstringUnescaped(valueStart, valueEnd);
     }
 
     @Override
@@ -38,21 +46,34 @@ public class ListNode extends Node {
             return;
         }
 
-        String text = getDataText();
-        int dashIndex = getDashIndex(text);
+        int valueStart = getDashIndex() + 1;
+        int valueEnd = getDataEndIndex();
+        while (valueStart < valueEnd && getRawChar(valueStart) == ' ') {
+            valueStart++;
+        }
+
+        setDataText(rawSubstringUnescaped(getDataStartIndex(), valueStart) + value);
+    }
 
-        String afterDash = text.substring(dashIndex + 1);
-        int spacesAfterDash = ParsingLogicExtensions.getIndentationLevel(afterDash);
+    // These are worked out from the raw text the first time they're needed, and thrown away whenever the raw text changes.
+    private int dashIndex = -1; // -1 means not calculated yet
+    private String value = null;
 
-        setDataText(text.substring(0, dashIndex + spacesAfterDash + 1) + value);
+    @Override
+    protected void onRawTextChanged() {
+        super.onRawTextChanged();
+        dashIndex = -1;
+        value = null;
     }
 
-    private int getDashIndex(String text) {
-        int dashIndex = text.indexOf('-');
+    private int getDashIndex() {
         if (dashIndex < 0) {
-            throw new StringIndexOutOfBoundsException("List node comprised of the following text: " + rawText + " did not contain the character ':'");
+            int index = indexOfRawChar('-', getDataStartIndex(), getDataEndIndex());
+            if (index < 0) {
+                throw new StringIndexOutOfBoundsException("List node comprised of the following text: " + getRawText() + " did not contain the character '-'");
+            }
+            dashIndex = index;
         }
-
         return dashIndex;
     }
 }
@@ -10,6 +10,10 @@ public class MultiLineStringNode extends Node {
         super(rawText, file);
     }
 
+    public MultiLineStringNode(CharSequence source, int start, int end, ReadableWritableDataFile file) {
+        super(source, start, end, file);
+    }
+
     public MultiLineStringNode(int indentation, ReadableWritableDataFile file) {
         super(indentation, file);
         this.unAppliedStyle = false; // currently, no styles apply to MultiLineStringNodes
@@ -28,7 +32,17 @@ public class MultiLineStringNode extends Node {
     public static final String terminator = "\"\"\"";
 
     public boolean isTerminator() {
-        return getValue().equals(terminator);
+        int dataStart = getDataStartIndex();
+        if (getDataEndIndex() - dataStart != terminator.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < terminator.length(); i++) {
+            if (getRawChar(dataStart + i) != terminator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void makeTerminator() {
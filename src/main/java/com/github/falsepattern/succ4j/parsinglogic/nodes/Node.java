@@ -1,15 +1,15 @@
 package com.github.falsepattern.succ4j.parsinglogic.nodes;
 
-import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
 import com.github.falsepattern.succ4j.style.FileStyle;
 import com.github.falsepattern.succ4j.datafiles.abstractions.ReadableWritableDataFile;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import static com.github.falsepattern.util.FalseUtil.trimEnd;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a line of text in a SUCC file that contains data.
@@ -21,14 +21,68 @@ public abstract class Node extends Line {
 
     private final List<Line> childLines = new ArrayList<>();
     private final List<Node> childNodes = new ArrayList<>();
+    private LazyChildren unloadedChildren = null;
+
+    // Finds key children by name without going through all of them. It is only built once something looks up a child by name,
+    // and from then on it is kept up to date as children are added and removed. If two children have the same key, the first one wins,
+    // just like it would in a search from the top.
+    private Map<String, KeyNode> keyIndex = null;
+    private boolean keyIndexHasDuplicates = false;
+
+    // Children removed by key are only marked here at first, and taken out of the child lists all at once the next time something
+    // needs the children in order. That way removing many children one by one doesn't shift the lists over and over.
+    private Set<Node> pendingRemovals = null;
+
     public synchronized List<Line> getChildLines() {
+        loadChildren();
         return Collections.unmodifiableList(childLines);
     }
 
     public synchronized List<Node> getChildNodes() {
+        loadChildren();
         return Collections.unmodifiableList(childNodes);
     }
 
+    /**
+     * Gives this node children that will only be parsed once something needs them. Any children it already had are discarded.
+     * This is meant for the parser, so it doesn't count as a change to the file.
+     */
+    public synchronized void setUnloadedChildren(LazyChildren children) {
+        childLines.clear();
+        childNodes.clear();
+        keyIndex = null;
+        pendingRemovals = null;
+        unloadedChildren = children;
+    }
+
+    /**
+     * The children of this node that haven't been parsed yet, or null if they all have been.
+     */
+    public synchronized LazyChildren getUnloadedChildren() {
+        return unloadedChildren;
+    }
+
+    private synchronized void loadChildren() {
+        loadUnloadedChildren();
+        if (pendingRemovals != null) {
+            Set<Node> removals = pendingRemovals;
+            pendingRemovals = null;
+            childNodes.removeIf(removals::contains);
+            childLines.removeIf(removals::contains);
+        }
+    }
+
+    /**
+     * Like {@link #loadChildren()}, but children that were removed by key may still be in the child lists afterwards.
+     */
+    private synchronized void loadUnloadedChildren() {
+        if (unloadedChildren != null) {
+            LazyChildren children = unloadedChildren;
+            unloadedChildren = null; // cleared first, because loading adds the children through the regular methods
+            children.loadInto(this);
+        }
+    }
+
     // This is here so that nodes can access the style of their file. For nodes part of a ReadOnlyDataFile, it is null.
     // We reference a DataFile rather than a FileStyle because if a user changes the Style of the File, that change is automatically seen by all its nodes.
     public final ReadableWritableDataFile file;
@@ -44,28 +98,68 @@ public abstract class Node extends Line {
     public Node(String rawText, ReadableWritableDataFile file) {
         super(rawText);
         this.file = file;
+        this.modified = true;
+    }
+
+    public Node(CharSequence source, int start, int end, ReadableWritableDataFile file) {
+        super(source, start, end);
+        this.file = file;
     }
 
     public Node(int indentation, ReadableWritableDataFile file) {
         this.setIndentationLevel(indentation);
         this.file = file;
         this.unAppliedStyle = true;
+        this.modified = true;
     }
 
     protected boolean unAppliedStyle = false;
 
     public KeyNode getChildAddressedByName(String name) {
+        loadUnloadedChildren();
         ensureProperChildType(NodeChildrenType.key);
-        for (Node node: childNodes) {
-            KeyNode keyNode = (KeyNode) node;
-            if (keyNode.getKey().equals(name)) {
-                return keyNode;
-            }
+        KeyNode keyNode = getKeyIndex().get(name);
+        if (keyNode != null) {
+            return keyNode;
         }
 
+        loadChildren();
         return createKeyNode(name);
     }
 
+    private Map<String, KeyNode> getKeyIndex() {
+        if (keyIndex == null) {
+            loadChildren();
+            Map<String, KeyNode> index = new HashMap<>(Math.max(16, childNodes.size() * 2));
+            boolean duplicates = false;
+            for (Node node: childNodes) {
+                KeyNode keyNode = (KeyNode) node;
+                if (index.putIfAbsent(keyNode.getKey(), keyNode) != null) {
+                    duplicates = true;
+                }
+            }
+            keyIndex = index;
+            keyIndexHasDuplicates = duplicates;
+        }
+        return keyIndex;
+    }
+
+    /**
+     * Called by a child whose text has changed, in case its key is now different.
+     */
+    void childKeyChanged(KeyNode child, String oldKey) {
+        if (keyIndex == null) {
+            return;
+        }
+
+        try {
+            if (oldKey.equals(child.getKey())) {
+                return;
+            }
+        } catch (StringIndexOutOfBoundsException ignored) {} // the child isn't a valid key node anymore, so it can't be found by name
+        keyIndex = null;
+    }
+
     private KeyNode createKeyNode(String key) {
         KeyNode newNode = new KeyNode(getProperChildIndentation(), key, file);
         addChild(newNode);
@@ -73,6 +167,7 @@ public abstract class Node extends Line {
     }
 
     public ListNode getChildAddressedByListNumber(int number) {
+        loadChildren();
         ensureProperChildType(NodeChildrenType.list);
 
         int indentation = getProperChildIndentation();
@@ -85,6 +180,7 @@ public abstract class Node extends Line {
     }
 
     public MultiLineStringNode getChildAddressedByStringLineNumber(int number) {
+        loadChildren();
         ensureProperChildType(NodeChildrenType.multiLineString);
 
         // ensure proper number of child string nodes exist
@@ -113,6 +209,7 @@ public abstract class Node extends Line {
         }
 
         if (childNodeType != expectedType) {
+            loadChildren();
             if (childNodes.size() == 0) {
                 childNodeType = expectedType;
             } else {
@@ -123,7 +220,8 @@ public abstract class Node extends Line {
     }
 
     public boolean containsChildNode(String key) {
-        return Arrays.asList(getChildKeys()).contains(key);
+        loadUnloadedChildren();
+        return getKeyIndex().containsKey(key);
     }
 
     public void clearChildren() {
@@ -131,32 +229,74 @@ public abstract class Node extends Line {
     }
 
     public void clearChildren(NodeChildrenType newChildrenType) {
+        boolean hadChildren = unloadedChildren != null || !childLines.isEmpty();
+        unloadedChildren = null;
         childLines.clear();
         childNodes.clear();
-        if (newChildrenType != null) {
+        keyIndex = null;
+        pendingRemovals = null;
+        if (newChildrenType != null && newChildrenType != childNodeType) {
             childNodeType = newChildrenType;
+            hadChildren = true;
+        }
+
+        if (hadChildren) {
+            markModified();
         }
     }
 
     public void addChild(Line newLine) {
+        addLoadedChild(newLine);
+        markModified();
+    }
+
+    /**
+     * Adds a child that was read from the file, so it doesn't count as a change to the file. This is meant for the parser.
+     */
+    public void addLoadedChild(Line newLine) {
+        loadChildren();
         childLines.add(newLine);
+        newLine.parent = this;
 
-        try {
+        if (newLine instanceof Node) {
             Node newNode = (Node) newLine;
             childNodes.add(newNode);
-        } catch (ClassCastException ignored) {}
+            if (keyIndex != null) {
+                if (newNode instanceof KeyNode) {
+                    KeyNode keyNode = (KeyNode) newNode;
+                    if (keyIndex.putIfAbsent(keyNode.getKey(), keyNode) != null) {
+                        keyIndexHasDuplicates = true;
+                    }
+                } else {
+                    keyIndex = null;
+                }
+            }
+        }
     }
 
     public void removeChild(String key) {
-        for (Node node: childNodes) {
-            try {
-                KeyNode keyNode = (KeyNode) node;
-                if (keyNode.getKey().equals(key)) {
-                    childNodes.remove(node);
-                    childLines.remove(node);
-                    return;
+        loadUnloadedChildren();
+        if (childNodeType != NodeChildrenType.key) {
+            return;
+        }
+
+        if (keyIndexHasDuplicates) { // another child with the same key might have to take its place, so do it the slow way
+            loadChildren();
+        }
+
+        KeyNode keyNode = getKeyIndex().remove(key);
+        if (keyNode != null) {
+            if (keyIndexHasDuplicates) {
+                childNodes.remove(keyNode);
+                childLines.remove(keyNode);
+                keyIndex = null;
+            } else {
+                if (pendingRemovals == null) {
+                    pendingRemovals = Collections.newSetFromMap(new IdentityHashMap<>());
                 }
-            } catch (ClassCastException ignored) {}
+                pendingRemovals.add(keyNode);
+            }
+            markModified();
         }
     }
 
@@ -164,52 +304,224 @@ public abstract class Node extends Line {
         if (count < 0) {
             throw new IndexOutOfBoundsException("Stop it");
         }
+        loadChildren();
+
+        int removeCount = childNodes.size() - count;
+        if (removeCount <= 0) {
+            return;
+        }
+
+        // The removed nodes are the last ones, so everything from the first of them on loses its nodes, and keeps its other lines
+        int firstRemoved = childLines.size();
+        for (int seen = 0; seen < removeCount; ) {
+            if (childLines.get(--firstRemoved) instanceof Node) {
+                seen++;
+            }
+        }
+        childLines.subList(firstRemoved, childLines.size()).removeIf(line -> line instanceof Node);
 
-        for (int i = childNodes.size() - 1; i >= count; i--) {
-            Node removeThis = childNodes.remove(i);
-            childLines.remove(removeThis);
+        List<Node> removed = childNodes.subList(count, childNodes.size());
+        if (keyIndex != null) {
+            if (keyIndexHasDuplicates) {
+                keyIndex = null;
+            } else {
+                for (Node removeThis : removed) {
+                    if (removeThis instanceof KeyNode) {
+                        keyIndex.remove(((KeyNode) removeThis).getKey());
+                    }
+                }
+            }
         }
+        removed.clear();
+        markModified();
     }
 
     public String[] getChildKeys() {
+        loadChildren();
         return childNodes.stream().map((childNode) -> ((KeyNode) childNode).getKey()).toArray(String[]::new);
     }
 
     public String getDataText() {
-        if (ParsingLogicExtensions.isWhitespace(rawText)) {
-            return "";
+        if (dataText == null) {
+            int dataEnd = getDataEndIndex();
+            int dataStart = getDataStartIndex();
+            dataText = dataStart >= dataEnd ? "" : rawSubstringUnescaped(dataStart, dataEnd);
         }
-
-        return rawText.substring(getDataStartIndex(), getDataEndIndex()).replace("\\#", "#");
+        return dataText;
     }
 
     public void setDataText(String newData) {
-        rawText = rawText.substring(0, getDataStartIndex())
+        String text = getRawText();
+        setRawText(text.substring(0, getDataStartIndex())
                 + newData.replace("#", "\\#")
-                + rawText.substring(getDataEndIndex());
+                + text.substring(getDataEndIndex()));
     }
 
-    private int getDataStartIndex() {
-        return getIndentationLevel();
+    /**
+     * The comment at the end of this line, without the pound sign that starts it, or an empty string if there is no comment.
+     */
+    public String getComment() {
+        getDataEndIndex();
+        if (commentStart < 0) {
+            return "";
+        }
+        return getRawText().substring(commentStart + 1).trim();
+    }
+
+    // These are worked out from the raw text the first time they're needed, and thrown away whenever the raw text changes.
+    private int dataEnd = -1; // where the data of this line ends: before the comment and the whitespace in front of it. -1 means not calculated yet
+    private int commentStart = -1; // where the pound sign that starts the comment is, or -1 if there is no comment
+    private String dataText = null;
+
+    @Override
+    protected void onRawTextChanged() {
+        dataEnd = -1;
+        commentStart = -1;
+        dataText = null;
+        markModified();
+    }
+
+    /**
+     * Tells the file this node belongs to that its data has changed, so that it knows it has to be saved.
+     * This node and all the nodes it is nested in stop being rendered from the text they were parsed from.
+     */
+    protected void markModified() {
+        long modification = 0;
+        if (file != null) {
+            file.markModified();
+            modification = file.getModificationCount();
+        }
+        for (Node node = this; node != null; node = node.getParent()) {
+            node.modified = true;
+            node.lastModification = modification;
+        }
+    }
+
+    // A node that was parsed from a file and hasn't changed since, and neither have its children, renders to exactly the range of text
+    // it was parsed from. Saving it can then copy that range instead of going through its lines one by one.
+    // Once anything in a node changes, it is marked as modified along with all the nodes it is nested in, and stays that way.
+    private boolean modified = false;
+    private long lastModification = 0; // the modification count of the file when this node or anything nested in it last changed
+    private int subtreeEnd = -1; // -1 means not found yet, -2 means the node and its children aren't one range of text
+    private String checkedNewLine = null; // the line ending that the range has been checked to use, or null if it hasn't been
+
+    /**
+     * True if this node, or anything nested in it, was created or changed after the file was parsed.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * What {@link ReadableWritableDataFile#getModificationCount()} was right after this node, or anything nested in it, last changed.
+     * 0 if nothing in it has changed since it was parsed, or if it isn't part of a file that can be changed.
+     */
+    public long getLastModification() {
+        return lastModification;
+    }
+
+    /**
+     * If nothing in this node has changed since it was parsed, and its lines are separated by newLine in the text it was parsed from,
+     * the range of {@link #getSource()} from {@link #getSourceStart()} to the returned index is exactly how this node and all its
+     * children are rendered. Otherwise, this returns -1.
+     */
+    public synchronized int getUnmodifiedSubtreeEnd(String newLine) {
+        if (modified) {
+            return -1;
+        }
+
+        if (subtreeEnd == -1) {
+            int end = findSubtreeEnd();
+            subtreeEnd = end < 0 ? -2 : end;
+        }
+        if (subtreeEnd < 0) {
+            return -1;
+        }
+
+        if (!newLine.equals(checkedNewLine)) {
+            if (!separatedBy(newLine)) {
+                return -1;
+            }
+            checkedNewLine = newLine;
+        }
+        return subtreeEnd;
     }
 
-    private int getDataEndIndex() {
-        String text = rawText;
-        if (ParsingLogicExtensions.isWhitespace(text)) {
-            return text.length();
+    private int findSubtreeEnd() {
+        CharSequence source = getSource();
+        if (unloadedChildren != null) {
+            return unloadedChildren.getSourceEnd(source);
+        }
+        if (childLines.isEmpty()) {
+            return getSourceEnd();
         }
 
-        int poundSignIndex = text.indexOf('#');
-        while (poundSignIndex > 0 && text.charAt(poundSignIndex - 1) == '\\') {
-            poundSignIndex = text.indexOf('#', poundSignIndex + 1);
+        Line last = childLines.get(childLines.size() - 1);
+        if (last.getSource() != source) {
+            return -1;
         }
+        return last instanceof Node ? ((Node) last).findSubtreeEnd() : last.getSourceEnd();
+    }
 
-        if (poundSignIndex > 0) {
-            text = text.substring(0, poundSignIndex);
+    private boolean separatedBy(String newLine) {
+        CharSequence source = getSource();
+        for (int i = getSourceStart(); i < subtreeEnd; i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || c == '\r') {
+                int length = newLine.length();
+                if (i + length > subtreeEnd) {
+                    return false;
+                }
+                for (int j = 0; j < length; j++) {
+                    if (source.charAt(i + j) != newLine.charAt(j)) {
+                        return false;
+                    }
+                }
+                i += length - 1;
+            }
         }
+        return true;
+    }
 
-        text = trimEnd(text);
+    protected int getDataStartIndex() {
+        return getIndentationLevel();
+    }
 
-        return text.length();
+    protected int getDataEndIndex() {
+        if (dataEnd < 0) {
+            int length = getRawLength();
+            int end = length;
+            commentStart = -1;
+            // a pound sign at the very start of the line doesn't start a comment, same as it always has
+            if (length > 0 && getRawChar(0) != '#') {
+                for (int i = 1; i < length; i++) {
+                    if (getRawChar(i) == '#' && getRawChar(i - 1) != '\\') {
+                        end = i;
+                        commentStart = i;
+                        break;
+                    }
+                }
+            }
+
+            if (isWhitespace(0, length)) {
+                end = length;
+            } else {
+                while (end > 0 && getRawChar(end - 1) <= ' ') {
+                    end--;
+                }
+            }
+
+            dataEnd = end;
+        }
+        return dataEnd;
+    }
+
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (getRawChar(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -141,7 +141,7 @@ public class CollectionTypes {
             if (node.childNodeType != NodeChildrenType.key) {
                 node.clearChildren(NodeChildrenType.key);
             }
-            List<String> currentKeys = new ArrayList<>(map.size());
+            Set<String> currentKeys = new HashSet<>(map.size() * 2);
             if (mapTree.getChildren().size() >= 3) {
                 //Special case - it's a list-based map
                 ClassTree<?> valueType2 = mapTree.getChildren().get(2);
@@ -2,84 +2,264 @@ package com.github.falsepattern.util;
 
 import com.github.falsepattern.succ4j.Utilities;
 
+import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
+import java.nio.file.Paths;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Runs callbacks when files are changed or created.
+ * <p>
+ * How changes are found is up to a {@link FileWatcherBackend}. By default that is {@link WatchServiceFileWatcherBackend},
+ * which the operating system tells about changes. On file systems that never report changes, like NFS, use {@link PollingFileWatcherBackend}.
+ * <p>
+ * Changes are debounced: a file's callbacks run once it has gone {@link #debounceMillis} without changing, or once its first change
+ * is {@link #maxDebounceMillis} old, whichever comes first. An editor saving a file usually changes it several times in a row,
+ * and this turns that into one reload, without a file that keeps changing never getting reloaded.
+ * <p>
+ * The callbacks run on {@link #callbackExecutor}, so a file that takes long to reload doesn't hold up the others.
+ * The callbacks of one file never run more than once at a time. If the file changes again while they run, they run once more afterwards,
+ * no matter how many times it changed, so a lot of files changing at once queues up at most one run for each of them.
+ */
 //Evil threaded class
-//TODO separate manager and watcher classes
-public class CustomFileWatcher implements Runnable {
-    private static final Thread watcherThread;
-    private static final CustomFileWatcher rootWatcher;
-    private static final AtomicReference<List<CustomFileWatcher>> customWatchers = new AtomicReference<>(new ArrayList<>());
-    private static final AtomicBoolean shouldRun = new AtomicBoolean(true);
-    static {
-        rootWatcher = new CustomFileWatcher();
-        watcherThread = new Thread(rootWatcher);
-        watcherThread.start();
+public class CustomFileWatcher {
+    /**
+     * How long a file has to go without changes before its callbacks run. Every change during that time starts the wait over,
+     * and is merged into the same run.
+     */
+    public static volatile long debounceMillis = 50;
+
+    /**
+     * The longest the callbacks of a file wait after its first change, even if it keeps changing.
+     */
+    public static volatile long maxDebounceMillis = 1000;
+
+    /**
+     * The executor that callbacks run on. If this is null, they run on a shared pool with a thread for each processor.
+     * If the executor rejects a callback, it runs on the thread that waited out the debounce instead.
+     */
+    public static volatile Executor callbackExecutor = null;
+
+    /**
+     * The backend that files are watched with. Changing this only affects files that start being watched afterwards,
+     * files that are already watched keep the backend they started with.
+     */
+    public static volatile FileWatcherBackend backend = WatchServiceFileWatcherBackend.instance;
+
+    /**
+     * Called with anything a callback throws, on the thread the callback ran on. The other callbacks still run.
+     * {@link PollingFileWatcherBackend} also reports files it can't check here, once until checking them works again.
+     * If this is null, or throws itself, the error goes to the uncaught exception handler of the thread instead,
+     * like anything else a thread doesn't catch, but the thread keeps going.
+     */
+    public static volatile Consumer<Throwable> errorHandler = null;
+
+    private static class DefaultExecutor {
+        static final ThreadPoolExecutor instance;
+        static {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            instance = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "SUCC file watcher callbacks");
+                thread.setDaemon(true);
+                return thread;
+            });
+            instance.allowCoreThreadTimeOut(true);
+        }
     }
 
-    public synchronized static void terminate() {
-        shouldRun.set(false);
-        while(watcherThread.isAlive()) {
-            watcherThread.interrupt();
+    private static class Debouncer {
+        static final ScheduledThreadPoolExecutor instance = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "SUCC file watcher debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class WatchedFile {
+        final FileWatcherBackend backend;
+        final List<Runnable> callbacks = new ArrayList<>();
+        boolean pending = false; // changed, and waiting out the debounce
+        long firstChange; // when the pending change came in, in nanoseconds
+        long lastChange; // when the last change since then came in, in nanoseconds
+        boolean running = false;
+        boolean runAgain = false; // changed again while the callbacks were running
+
+        WatchedFile(FileWatcherBackend backend) {
+            this.backend = backend;
         }
     }
 
+    private static final Map<Path, WatchedFile> watchedFiles = new HashMap<>();
+    private static final List<FileWatcherBackend> usedBackends = new ArrayList<>();
 
-    private final boolean isManager;
-    private WatchService watcher;
-    private final AtomicReference<Map<String, Runnable>> fileChangeCallbacks = new AtomicReference<>(new HashMap<>());
+    /**
+     * @deprecated Files are watched through {@link #backend} now, and the WatchService is not used.
+     *             Use the static {@link #addCallback(String, Runnable)} instead of adding callbacks to an instance.
+     */
+    @Deprecated
+    public CustomFileWatcher(WatchService sourceService) {}
 
-    private CustomFileWatcher() {
-        isManager = true;
+    /**
+     * Stops watching all files, and closes every backend that was used to watch them.
+     * Files can still be watched afterwards, the backends start again when they are needed.
+     */
+    public synchronized static void terminate() {
+        for (FileWatcherBackend usedBackend : usedBackends) {
+            usedBackend.close();
+        }
+        usedBackends.clear();
+        watchedFiles.clear();
+    }
+
+    /**
+     * Starts running a callback whenever a file is changed or created.
+     * The same file can have many callbacks, and they all run in the order they were added.
+     */
+    public static synchronized void addCallback(String relativeOrAbsolutePath, Runnable callback) throws IOException {
+        Path file = toFilePath(relativeOrAbsolutePath);
+        WatchedFile watched = watchedFiles.get(file);
+        if (watched == null) {
+            FileWatcherBackend fileBackend = backend;
+            fileBackend.watch(file, () -> fileChanged(file));
+            if (!usedBackends.contains(fileBackend)) {
+                usedBackends.add(fileBackend);
+            }
+            watched = new WatchedFile(fileBackend);
+            watchedFiles.put(file, watched);
+        }
+        watched.callbacks.add(callback);
+    }
+
+    /**
+     * Stops running a callback that was added with {@link #addCallback(String, Runnable)}.
+     * Once a file has no callbacks left, its backend stops watching it.
+     */
+    public static synchronized void removeCallback(String relativeOrAbsolutePath, Runnable callback) {
+        Path file = toFilePath(relativeOrAbsolutePath);
+        WatchedFile watched = watchedFiles.get(file);
+        if (watched == null || !watched.callbacks.remove(callback) || !watched.callbacks.isEmpty()) {
+            return;
+        }
+        watchedFiles.remove(file);
+        watched.backend.unwatch(file);
     }
-    public CustomFileWatcher(WatchService sourceService) {
-        isManager = false;
-        this.watcher = sourceService;
-        customWatchers.get().add(this);
+
+    private static Path toFilePath(String relativeOrAbsolutePath) {
+        return Paths.get(Utilities.absolutePath(relativeOrAbsolutePath)).normalize();
     }
 
-    public synchronized void addCallback(String relativeOrAbsolutePath, Runnable callback) {
-        if (isManager) {
-            //We do not do that here
-            throw new RuntimeException("Tried to add callback to manager file watcher");
+    private static void fileChanged(Path file) {
+        long now = System.nanoTime();
+        WatchedFile watched;
+        long delay;
+        synchronized (CustomFileWatcher.class) {
+            watched = watchedFiles.get(file);
+            if (watched == null) {
+                return;
+            }
+            watched.lastChange = now;
+            if (watched.pending) { // already scheduled, and checks whether it has to wait longer once it runs
+                return;
+            }
+            watched.pending = true;
+            watched.firstChange = now;
+            delay = due(watched) - now;
         }
-        fileChangeCallbacks.get().put(Utilities.absolutePath(relativeOrAbsolutePath), callback);
+        Debouncer.instance.schedule(() -> debounced(watched), delay, TimeUnit.NANOSECONDS);
+    }
+
+    // only called while holding the lock of this class
+    private static long due(WatchedFile watched) {
+        long quiet = TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMillis));
+        long maxDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDebounceMillis));
+        return Math.min(watched.lastChange + quiet, watched.firstChange + maxDelay);
     }
 
-    @SuppressWarnings("BusyWait")
-    @Override
-    public void run() {
-        if (isManager) {
-            //Manager code
-            while (shouldRun.get()) {
-                customWatchers.get().forEach(CustomFileWatcher::runSingle);
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ignored) {}
+    private static void debounced(WatchedFile watched) {
+        synchronized (CustomFileWatcher.class) {
+            long wait = due(watched) - System.nanoTime();
+            if (wait > 0) { // changed again since this was scheduled
+                Debouncer.instance.schedule(() -> debounced(watched), wait, TimeUnit.NANOSECONDS);
+                return;
             }
+            watched.pending = false;
+            if (watched.running) {
+                watched.runAgain = true; // the run that is going on now runs them again once it is done
+                return;
+            }
+            watched.running = true;
+        }
+
+        Executor executor = callbackExecutor;
+        if (executor == null) {
+            executor = DefaultExecutor.instance;
+        }
+        try {
+            executor.execute(() -> runCallbacks(watched));
+        } catch (RejectedExecutionException e) {
+            runCallbacks(watched);
         }
     }
 
-    private synchronized void runSingle() {
-        WatchKey watchKey;
-        while ((watchKey = watcher.poll()) != null) {
-            List<WatchEvent<?>> events = watchKey.pollEvents();
-            for (WatchEvent<?> event: events) {
-                String path = ((Path)event.context()).toAbsolutePath().toString();
-                if (fileChangeCallbacks.get().containsKey(path)) {
-                    fileChangeCallbacks.get().get(path).run();
+    private static void runCallbacks(WatchedFile watched) {
+        boolean finished = false;
+        try {
+            while (true) {
+                List<Runnable> callbacks;
+                synchronized (CustomFileWatcher.class) {
+                    callbacks = new ArrayList<>(watched.callbacks); // empty if the file stopped being watched in the meantime
                 }
+
+                // run outside of the lock, so that callbacks can add and remove callbacks themselves
+                for (Runnable callback : callbacks) {
+                    try {
+                        callback.run();
+                    } catch (Throwable e) { // even an Error, like a StackOverflowError from a reload, mustn't stop the file from being watched
+                        reportError(e);
+                    }
+                }
+
+                synchronized (CustomFileWatcher.class) {
+                    if (!watched.runAgain) {
+                        watched.running = false;
+                        finished = true;
+                        return;
+                    }
+                    watched.runAgain = false;
+                }
+            }
+        } finally {
+            if (!finished) { // reporting an error failed too. Whatever it was is on its way up, but the next change still runs the callbacks
+                synchronized (CustomFileWatcher.class) {
+                    watched.running = false;
+                    watched.runAgain = false;
+                }
+            }
+        }
+    }
+
+    static void reportError(Throwable error) {
+        Consumer<Throwable> handler = errorHandler;
+        if (handler != null) {
+            try {
+                handler.accept(error);
+                return;
+            } catch (RuntimeException e) {
+                error.addSuppressed(e);
             }
-            watchKey.reset();
         }
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
     }
 }
@@ -85,7 +85,7 @@ public final class FalseUtil {
                 break;
             }
         }
-        if (lastIndex == 0) {
+        if (lastIndex < 0) {
             return "";
         } else if (lastIndex < chars.length - 1) {
             return s.substring(0, lastIndex + 1);
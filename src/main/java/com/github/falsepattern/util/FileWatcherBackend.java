@@ -0,0 +1,28 @@
+package com.github.falsepattern.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Finds out when files change, for {@link CustomFileWatcher}. The watcher takes care of everything after that:
+ * debouncing the changes, and running the callbacks of the files.
+ */
+public interface FileWatcherBackend {
+    /**
+     * Starts watching a file. The watcher never watches the same file twice with one backend without unwatching it in between.
+     * @param file An absolute, normalized path.
+     * @param onChange Runs whenever the file may have changed, on any thread. Running it too often is fine, missing a change is not.
+     */
+    void watch(Path file, Runnable onChange) throws IOException;
+
+    /**
+     * Stops watching a file. After this returns, its onChange may still run once, but not after that.
+     */
+    void unwatch(Path file);
+
+    /**
+     * Stops watching all files, and stops any threads of the backend.
+     * The backend can still be used afterwards: watching a file again starts whatever it needs again.
+     */
+    void close();
+}
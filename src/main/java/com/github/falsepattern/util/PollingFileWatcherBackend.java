@@ -0,0 +1,166 @@
+package com.github.falsepattern.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches files by checking their size and last modified time over and over again. This works on every file system,
+ * including the ones whose changes a WatchService never hears about, like NFS and some container overlay mounts.
+ * <p>
+ * Every file is checked once per {@link #intervalMillis}. The checks aren't all done at once, but spread out in small batches over the interval,
+ * so that thousands of watched files don't cause a burst of I/O every interval. All of them are done on a single thread.
+ * Nothing runs while no files are watched.
+ */
+public class PollingFileWatcherBackend implements FileWatcherBackend {
+    // how many batches the checks of one interval are split into
+    private static final int batchesPerInterval = 20;
+
+    /**
+     * How often each file is checked, in milliseconds.
+     */
+    public final long intervalMillis;
+
+    private final long batchMillis;
+    private ScheduledExecutorService executor = null; // started when the first file is watched, and again after close()
+    private final Map<Path, PolledFile> files = new HashMap<>();
+    private final List<PolledFile> order = new ArrayList<>(); // the files in the order they are checked in
+    private int next = 0; // where in order the next batch starts
+    private ScheduledFuture<?> polling = null;
+
+    private static class PolledFile {
+        final Path path;
+        final Runnable onChange;
+        volatile boolean watched = true;
+        boolean failing = false; // the last check failed, which was already reported
+        long size;
+        FileTime lastModified;
+
+        PolledFile(Path path, Runnable onChange) {
+            this.path = path;
+            this.onChange = onChange;
+        }
+    }
+
+    /**
+     * @param intervalMillis How often each file is checked, in milliseconds.
+     */
+    public PollingFileWatcherBackend(long intervalMillis) {
+        this.intervalMillis = Math.max(1, intervalMillis);
+        batchMillis = Math.max(1, this.intervalMillis / batchesPerInterval);
+    }
+
+    @Override
+    public synchronized void watch(Path file, Runnable onChange) throws IOException {
+        PolledFile polled = new PolledFile(file, onChange);
+        check(polled); // remembers the current state, so that only changes from now on count
+        files.put(file, polled);
+        order.add(polled);
+        if (polling == null) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "SUCC file poller");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            polling = executor.scheduleWithFixedDelay(this::checkBatch, batchMillis, batchMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void unwatch(Path file) {
+        PolledFile polled = files.remove(file);
+        if (polled == null) {
+            return;
+        }
+        polled.watched = false;
+        int index = order.indexOf(polled);
+        order.remove(index);
+        if (index < next) {
+            next--;
+        }
+        if (files.isEmpty()) {
+            polling.cancel(false);
+            polling = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (PolledFile polled : files.values()) {
+            polled.watched = false;
+        }
+        files.clear();
+        order.clear();
+        next = 0;
+        polling = null;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void checkBatch() {
+        List<PolledFile> batch;
+        synchronized (this) {
+            int count = (int) Math.min(order.size(), (order.size() * batchMillis + intervalMillis - 1) / intervalMillis);
+            batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (next >= order.size()) {
+                    next = 0;
+                }
+                batch.add(order.get(next++));
+            }
+        }
+
+        // the files are only read on this thread, so they can be checked outside of the lock
+        for (PolledFile polled : batch) {
+            try {
+                if (check(polled) && polled.watched) {
+                    polled.onChange.run();
+                }
+                polled.failing = false;
+            } catch (IOException | RuntimeException e) {
+                // a file that can't be checked usually stays that way for a while, so that is only reported once
+                if (!polled.failing) {
+                    polled.failing = true;
+                    CustomFileWatcher.reportError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether the file changed since it was last checked.
+     */
+    private static boolean check(PolledFile polled) throws IOException {
+        long size;
+        FileTime lastModified;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(polled.path, BasicFileAttributes.class);
+            size = attributes.size();
+            lastModified = attributes.lastModifiedTime(); // in the full precision of the file system, not just milliseconds
+        } catch (NoSuchFileException e) { // deleted, which isn't a change the watcher reports, but creating it again is
+            size = -1;
+            lastModified = null;
+        }
+
+        boolean changed = size != polled.size || !Objects.equals(lastModified, polled.lastModified);
+        polled.size = size;
+        polled.lastModified = lastModified;
+        return changed && size >= 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.falsepattern.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches files with the WatchService of their file system, which gets told about changes by the operating system (inotify on Linux).
+ * This is the default backend of {@link CustomFileWatcher}.
+ * <p>
+ * There is only one WatchService for each file system, shared by every watched file on it, and each directory is registered with it once,
+ * no matter how many watched files are in it. A directory stays registered for as long as at least one file in it is watched.
+ * On Linux every WatchService is a separate inotify instance, and there are only 128 of those per user by default,
+ * so sharing them is what allows watching many thousands of files.
+ * Each WatchService has a thread that blocks until the file system reports a change, so nothing runs while no files change.
+ * <p>
+ * Some file systems, like NFS and some container overlay mounts, never report any changes. Use {@link PollingFileWatcherBackend} for those.
+ */
+public class WatchServiceFileWatcherBackend implements FileWatcherBackend {
+    /**
+     * The backend that is shared by everything that doesn't need its own.
+     */
+    public static final WatchServiceFileWatcherBackend instance = new WatchServiceFileWatcherBackend();
+
+    private final Map<FileSystem, FileSystemWatcher> watchers = new HashMap<>();
+
+    @Override
+    public synchronized void watch(Path file, Runnable onChange) throws IOException {
+        FileSystem fileSystem = file.getFileSystem();
+        FileSystemWatcher watcher = watchers.get(fileSystem);
+        if (watcher == null) {
+            watcher = new FileSystemWatcher(fileSystem.newWatchService());
+            watchers.put(fileSystem, watcher);
+        }
+        watcher.add(file, onChange);
+    }
+
+    @Override
+    public synchronized void unwatch(Path file) {
+        FileSystemWatcher watcher = watchers.get(file.getFileSystem());
+        if (watcher != null) {
+            watcher.remove(file);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (FileSystemWatcher watcher : watchers.values()) {
+            watcher.close();
+        }
+        watchers.clear();
+    }
+
+    private static class WatchedDirectory {
+        WatchKey key;
+        int watchedFiles = 0;
+
+        WatchedDirectory(WatchKey key) {
+            this.key = key;
+        }
+    }
+
+    // How long closing waits for the thread of a WatchService to stop. It stops on its own even if it takes longer, since it is told to.
+    private static final long closeTimeoutMillis = 1000;
+
+    private static class FileSystemWatcher implements Runnable {
+        private final WatchService watcher;
+        private final Thread thread;
+        private final Map<Path, WatchedDirectory> watchedDirectories = new HashMap<>();
+        private final Map<Path, Runnable> watchedFiles = new HashMap<>();
+        private volatile boolean shouldRun = true;
+
+        FileSystemWatcher(WatchService watcher) {
+            this.watcher = watcher;
+            thread = new Thread(this, "SUCC file watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        synchronized void add(Path file, Runnable onChange) throws IOException {
+            Path directory = file.getParent();
+            WatchedDirectory watched = watchedDirectories.get(directory);
+            if (watched == null || !watched.key.isValid()) { // a key stops being valid if its directory was deleted, and has to be registered again
+                // atomic saves replace the file, which shows up as it being created
+                WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+                if (watched == null) {
+                    watched = new WatchedDirectory(key);
+                    watchedDirectories.put(directory, watched);
+                } else {
+                    watched.key = key;
+                }
+            }
+            watched.watchedFiles++;
+            watchedFiles.put(file, onChange);
+        }
+
+        synchronized void remove(Path file) {
+            if (watchedFiles.remove(file) == null) {
+                return;
+            }
+
+            Path directory = file.getParent();
+            WatchedDirectory watched = watchedDirectories.get(directory);
+            if (--watched.watchedFiles == 0) {
+                watched.key.cancel();
+                watchedDirectories.remove(directory);
+            }
+        }
+
+        void close() {
+            shouldRun = false;
+            try {
+                watcher.close(); // wakes the thread up if it is waiting for changes
+            } catch (IOException ignored) {}
+            thread.interrupt(); // in case it is somewhere else than waiting for changes
+            try {
+                thread.join(closeTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (shouldRun) {
+                WatchKey watchKey;
+                try {
+                    watchKey = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    continue; // close() was called, if this isn't supposed to run anymore
+                }
+
+                Path directory = (Path) watchKey.watchable();
+                List<Runnable> changes = new ArrayList<>();
+                synchronized (this) {
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) { // events were lost, so any file in the directory could have changed
+                            watchedFiles.forEach((file, onChange) -> {
+                                if (directory.equals(file.getParent())) {
+                                    changes.add(onChange);
+                                }
+                            });
+                            continue;
+                        }
+
+                        Runnable onChange = watchedFiles.get(directory.resolve((Path) event.context()));
+                        if (onChange != null) {
+                            changes.add(onChange);
+                        }
+                    }
+                }
+                watchKey.reset();
+                changes.forEach(Runnable::run);
+            }
+        }
+    }
+}
@@ -5,9 +5,36 @@ import com.github.falsepattern.util.reflectionhelper.ClassTree;
 import org.junit.jupiter.api.Assertions;
 import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.UUID;
 
 public class TestUtilities {
+    /**
+     * A file with most of what SUCC has in it: comments, nested keys, lists, multi-line strings, empty lines, non-ASCII text
+     * and mixed line endings. For tests that store a file in another form, and need to get all of it back.
+     */
+    public static final String sampleFileText =
+            "# a comment\n" +
+            "number: 1 # another comment\n" +
+            "nested:\n" +
+            "    list:\n" +
+            "        - first\n" +
+            "        -\n" +
+            "            inner: 2\n" +
+            "\n" +
+            "    text: \"\"\"\n" +
+            "        some\n" +
+            "        lines\n" +
+            "        \"\"\"\n" +
+            "ünïcode:\r\n" +
+            "    välue: ✓ 𝄞\r\n" +
+            "\n" +
+            "empty:\n" +
+            "last: 3\n";
+
     public static void performSaveLoadTest(ClassTree<?> type, Object savedValue) {
         String savedValueKey = "test key";
         MemoryDataFile file = new MemoryDataFile();
@@ -39,4 +66,25 @@ public class TestUtilities {
             Assertions.assertTrue(anyMatch);
         }
     }
+
+    /**
+     * A path in the working directory that no file has yet.
+     */
+    public static String generateUniqueFilePath() {
+        String filePath;
+        do {
+            filePath = Utilities.absolutePath(UUID.randomUUID().toString() + ".succ");
+        } while (Files.exists(Paths.get(filePath)));
+        return filePath;
+    }
+
+    /**
+     * Deletes a file that a test made, along with the compiled cache, index and journal that might have been made next to it.
+     */
+    public static void deleteFile(String path) throws IOException {
+        Files.deleteIfExists(Paths.get(path + "c"));
+        Files.deleteIfExists(Paths.get(path + "i"));
+        Files.deleteIfExists(Paths.get(path + ".journal"));
+        Files.delete(Paths.get(path));
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class Parse_ChildIndexTests {
+    private static final String sampleSucc = "parent:\n" +
+            "    first: 1\n" +
+            "    second: 2\n" +
+            "    first: 3\n";
+
+    private static Node parent() {
+        return new MemoryDataFile(sampleSucc).getTopLevelNodes().get("parent");
+    }
+
+    @Test
+    public void childIndex_firstDuplicateWins() {
+        Node parent = parent();
+        Assertions.assertEquals("1", parent.getChildAddressedByName("first").getValue());
+        Assertions.assertTrue(parent.containsChildNode("second"));
+        Assertions.assertFalse(parent.containsChildNode("third"));
+
+        parent.removeChild("first");
+        Assertions.assertEquals("3", parent.getChildAddressedByName("first").getValue());
+        Assertions.assertEquals(2, parent.getChildNodes().size());
+    }
+
+    @Test
+    public void childIndex_followsRenamedChildren() {
+        Node parent = parent();
+        KeyNode second = parent.getChildAddressedByName("second");
+        second.setRawText("    renamed: 2");
+        Assertions.assertFalse(parent.containsChildNode("second"));
+        Assertions.assertSame(second, parent.getChildAddressedByName("renamed"));
+
+        second.setValue("22");
+        Assertions.assertSame(second, parent.getChildAddressedByName("renamed"));
+    }
+
+    @Test
+    public void childIndex_followsAddedAndRemovedChildren() {
+        Node parent = parent();
+        KeyNode added = parent.getChildAddressedByName("added");
+        Assertions.assertSame(added, parent.getChildAddressedByName("added"));
+        Assertions.assertEquals(4, parent.getChildNodes().size());
+
+        parent.capChildCount(1);
+        Assertions.assertFalse(parent.containsChildNode("added"));
+        Assertions.assertFalse(parent.containsChildNode("second"));
+        Assertions.assertEquals("1", parent.getChildAddressedByName("first").getValue());
+    }
+
+    @Test
+    public void childRemoval_keepsLinesWithoutData() {
+        MemoryDataFile file = new MemoryDataFile("list:\n" +
+                "    - 1\n" +
+                "    # one\n" +
+                "    - 2\n" +
+                "    # two\n" +
+                "    - 3\n" +
+                "map:\n" +
+                "    a: 1\n" +
+                "    # after a\n" +
+                "    b: 2\n" +
+                "    c: 3\n");
+        file.getTopLevelNodes().get("list").capChildCount(1);
+        Node map = file.getTopLevelNodes().get("map");
+        map.removeChild("a");
+        map.removeChild("c");
+        Assertions.assertFalse(map.containsChildNode("a"));
+        Assertions.assertTrue(map.containsChildNode("b"));
+
+        Assertions.assertEquals("list:\n" +
+                "    - 1\n" +
+                "    # one\n" +
+                "    # two\n" +
+                "map:\n" +
+                "    # after a\n" +
+                "    b: 2", file.getRawText().replace(System.lineSeparator(), "\n"));
+        Assertions.assertEquals(1, map.getChildNodes().size());
+    }
+}
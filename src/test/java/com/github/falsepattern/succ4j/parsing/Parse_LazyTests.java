@@ -0,0 +1,82 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.ComplexType;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryReadOnlyDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class Parse_LazyTests {
+    private static final String sampleSucc = "# leading comment\n" +
+            "complex:\n" +
+            "    Integer: 12\n" +
+            "    String: lazy # comment\n" +
+            "    Boolean: true\n" +
+            "# comment that belongs to complex\n" +
+            "list:\n" +
+            "    - 1\n" +
+            "    - 2\n" +
+            "    - 3\n" +
+            "nested:\n" +
+            "    inner:\n" +
+            "        text: \"\"\"\n" +
+            "no indentation inside a multi-line string\n" +
+            "        \"\"\"\n" +
+            "top: \"\"\"\n" +
+            "    line\n" +
+            "    \"\"\"\n" +
+            "    indented top: after a multi-line string\n" +
+            "valued: 5\n" +
+            "    also top: level\n";
+
+    private static LoadOptions lazyOptions() {
+        LoadOptions options = new LoadOptions();
+        options.lazy = true;
+        return options;
+    }
+
+    @Test
+    public void lazyLoad_matchesFullLoad() {
+        MemoryReadOnlyDataFile full = new MemoryReadOnlyDataFile(sampleSucc);
+        MemoryReadOnlyDataFile lazy = new MemoryReadOnlyDataFile(sampleSucc, null, null, lazyOptions());
+
+        Assertions.assertEquals(full.topLevelKeys(), lazy.topLevelKeys());
+        Assertions.assertEquals(full.getRawText(), lazy.getRawText()); // nothing has been parsed yet
+        Assertions.assertTrue(lazy.getTopLevelNodes().get("complex").getUnloadedChildren() != null);
+
+        Assertions.assertEquals(new ComplexType(12, "lazy", true), lazy.get(new ClassTree<>(ComplexType.class), "complex"));
+        Assertions.assertEquals(Arrays.asList(1, 2, 3), lazy.get(ClassTree.parseFromString("java.util.ArrayList<java.lang.Integer>"), "list"));
+        Assertions.assertEquals("no indentation inside a multi-line string", lazy.getAtPath(new ClassTree<>(String.class), new String[]{"nested", "inner", "text"}));
+        Assertions.assertEquals("line", lazy.get(new ClassTree<>(String.class), "top"));
+        Assertions.assertEquals("after a multi-line string", lazy.get(new ClassTree<>(String.class), "indented top"));
+        Assertions.assertEquals("level", lazy.get(new ClassTree<>(String.class), "also top"));
+        Assertions.assertTrue(lazy.keyExistsAtPath("nested", "inner", "text"));
+        Assertions.assertFalse(lazy.keyExistsAtPath("nested", "missing"));
+
+        Assertions.assertEquals(full.getRawText(), lazy.getRawText()); // and everything that has been parsed renders the same
+    }
+
+    @Test
+    public void lazyLoad_untouchedSectionsAreNotParsed() {
+        MemoryReadOnlyDataFile lazy = new MemoryReadOnlyDataFile("good: 1\nbroken:\n    - 1\n    key: value\n", null, null, lazyOptions());
+        Assertions.assertEquals(1, (int) lazy.get(new ClassTree<>(Integer.class), "good"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> lazy.keyExistsAtPath("broken", "key"));
+    }
+
+    @Test
+    public void lazyLoad_canBeModified() {
+        MemoryDataFile full = new MemoryDataFile(sampleSucc);
+        MemoryDataFile lazy = new MemoryDataFile(sampleSucc, null, null, lazyOptions());
+        for (MemoryDataFile file : Arrays.asList(full, lazy)) {
+            file.setAtPath(new ClassTree<>(Integer.class), 13, "complex", "Integer");
+            file.setAtPath(new ClassTree<>(String.class), "added", "nested", "inner", "other");
+            file.set(new ClassTree<>(String.class), "top", "single line");
+        }
+        Assertions.assertEquals(full.getRawText(), lazy.getRawText());
+    }
+}
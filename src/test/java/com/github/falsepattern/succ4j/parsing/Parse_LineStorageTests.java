@@ -0,0 +1,57 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryReadOnlyDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class Parse_LineStorageTests {
+    private static final String sampleSucc = "a: 1\n" +
+            "escaped: has \\# pound \\#signs # and a comment\n" +
+            "  spaced key   :    spaced value   # comment\n" +
+            "parent:\n" +
+            "    - x\n" +
+            "    -   y   # comment\n";
+
+    @Test
+    public void lineStorage_readsKeysAndValues() {
+        MemoryReadOnlyDataFile file = new MemoryReadOnlyDataFile(sampleSucc);
+        Assertions.assertEquals(Arrays.asList("a", "escaped", "spaced key", "parent"), Arrays.asList(file.getTopLevelKeysInOrder()));
+        Assertions.assertEquals(1, (int) file.get(new ClassTree<>(Integer.class), "a"));
+        Assertions.assertEquals("has # pound #signs", file.get(new ClassTree<>(String.class), "escaped"));
+        Assertions.assertEquals("spaced value", file.get(new ClassTree<>(String.class), "spaced key"));
+        Assertions.assertEquals("y", file.getTopLevelNodes().get("parent").getChildNodes().get(1).getValue());
+    }
+
+    @Test
+    public void lineStorage_editedLinesKeepTheirFormatting() {
+        MemoryDataFile file = new MemoryDataFile(sampleSucc);
+        file.set(new ClassTree<>(String.class), "spaced key", "new # value");
+        KeyNode node = file.getTopLevelNodes().get("spaced key");
+        Assertions.assertEquals("  spaced key   :    new \\# value   # comment", node.getRawText());
+        Assertions.assertEquals("new # value", node.getValue());
+        Assertions.assertEquals(sampleSucc.replace("spaced value", "new \\# value").trim(), file.getRawText().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void lineStorage_cachedPartsFollowEdits() {
+        MemoryDataFile file = new MemoryDataFile(sampleSucc);
+        KeyNode node = file.getTopLevelNodes().get("escaped");
+        Assertions.assertEquals("escaped", node.getKey());
+        Assertions.assertEquals("has # pound #signs", node.getValue());
+        Assertions.assertEquals("and a comment", node.getComment());
+
+        node.setValue("changed");
+        Assertions.assertEquals("changed", node.getValue());
+        Assertions.assertEquals("and a comment", node.getComment());
+
+        node.setIndentationLevel(4);
+        Assertions.assertEquals("escaped", node.getKey());
+        Assertions.assertEquals("changed", node.getValue());
+        Assertions.assertEquals("    escaped: changed # and a comment", node.getRawText());
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryReadOnlyDataFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class Parse_ParallelTests {
+    private static LoadOptions parallelOptions(ForkJoinPool pool) {
+        LoadOptions options = new LoadOptions();
+        options.parallel = true;
+        options.parallelThreshold = 0;
+        options.parallelPool = pool;
+        return options;
+    }
+
+    private static String generateSucc(int sections) {
+        StringBuilder succ = new StringBuilder("# generated\n");
+        for (int i = 0; i < sections; i++) {
+            succ.append("section").append(i).append(":\n");
+            succ.append("    value: ").append(i).append(" # comment\n");
+            succ.append("    list:\n");
+            for (int j = 0; j < i % 7; j++) {
+                succ.append("        - ").append(j).append('\n');
+            }
+            succ.append("    text: \"\"\"\n");
+            succ.append("line ").append(i).append('\n');
+            succ.append("        \"\"\"\n");
+            succ.append('\n');
+            if (i % 10 == 0) {
+                succ.append("valued").append(i).append(": ").append(i).append('\n');
+            }
+        }
+        return succ.toString();
+    }
+
+    @Test
+    public void parallelLoad_matchesSequentialLoad() {
+        String succ = generateSucc(5000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MemoryReadOnlyDataFile sequential = new MemoryReadOnlyDataFile(succ);
+            MemoryReadOnlyDataFile parallel = new MemoryReadOnlyDataFile(succ, null, null, parallelOptions(pool));
+            Assertions.assertArrayEquals(sequential.getTopLevelKeysInOrder(), parallel.getTopLevelKeysInOrder());
+            Assertions.assertEquals(sequential.getRawText(), parallel.getRawText());
+            Assertions.assertTrue(parallel.getTopLevelNodes().get("section4999").getUnloadedChildren() == null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelLoad_throwsFirstError() {
+        String succ = generateSucc(100) + "broken:\n    - 1\n    key: value\n" + generateSucc(100) + "- not a key\n";
+        String sequentialError = Assertions.assertThrows(RuntimeException.class, () -> new MemoryReadOnlyDataFile(succ)).getCause().getMessage();
+        String parallelError = Assertions.assertThrows(RuntimeException.class, () -> new MemoryReadOnlyDataFile(succ, null, null, parallelOptions(null))).getCause().getMessage();
+        Assertions.assertEquals(sequentialError, parallelError);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.Utilities;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Node;
+import com.github.falsepattern.util.Pair;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class Parse_RenderCacheTests {
+    private static String sample(String newLine) {
+        return String.join(newLine,
+                "# comment",
+                "first:",
+                "    a: 1",
+                "    b: 2 # comment",
+                "    ",
+                "second:",
+                "    list:",
+                "        - x",
+                "        - y   ",
+                "text: \"\"\"",
+                "    line",
+                "    \"\"\"",
+                "last: 3",
+                "", "");
+    }
+
+    private static String expected(String text) {
+        return text.substring(0, text.length() - 2 * Utilities.getNewLine().length());
+    }
+
+    @Test
+    public void unchangedNodes_renderAsParsed() {
+        String succ = sample(Utilities.getNewLine());
+        MemoryDataFile file = new MemoryDataFile(succ);
+        Assertions.assertEquals(expected(succ), file.getRawText());
+        for (Node node : file.getTopLevelNodes().values()) {
+            Assertions.assertFalse(node.isModified());
+            Assertions.assertTrue(node.getUnmodifiedSubtreeEnd(Utilities.getNewLine()) >= 0);
+        }
+    }
+
+    @Test
+    public void changes_markOnlyTheirAncestors() {
+        String succ = sample(Utilities.getNewLine());
+        MemoryDataFile file = new MemoryDataFile(succ);
+        file.autoSave = false;
+        file.setAtPath(new ClassTree<>(Integer.class), 5, "first", "b");
+
+        Map<String, KeyNode> nodes = file.getTopLevelNodes();
+        Assertions.assertTrue(nodes.get("first").isModified());
+        Assertions.assertTrue(nodes.get("first").getChildAddressedByName("b").isModified());
+        Assertions.assertFalse(nodes.get("first").getChildAddressedByName("a").isModified());
+        Assertions.assertFalse(nodes.get("second").isModified());
+        Assertions.assertEquals(-1, nodes.get("first").getUnmodifiedSubtreeEnd(Utilities.getNewLine()));
+        Assertions.assertEquals(expected(succ.replace("b: 2", "b: 5")), file.getRawText());
+    }
+
+    @Test
+    public void editedLinesWithoutData_areRendered() {
+        String newLine = Utilities.getNewLine();
+        Pair<List<Line>, Map<String, KeyNode>> data = DataConverter.dataStructureFromSUCC(sample(newLine), null);
+        KeyNode first = data.value.get("first");
+        Line blank = first.getChildLines().get(2);
+        blank.setRawText("    # added");
+
+        Assertions.assertTrue(first.isModified());
+        Assertions.assertEquals(expected(sample(newLine).replace("b: 2 # comment" + newLine + "    ", "b: 2 # comment" + newLine + "    # added")),
+                DataConverter.succFromDataStructure(data.key));
+    }
+
+    @Test
+    public void otherLineEndings_areReplaced() {
+        String newLine = Utilities.getNewLine();
+        String other = newLine.equals("\n") ? "\r\n" : "\n";
+        Pair<List<Line>, Map<String, KeyNode>> data = DataConverter.dataStructureFromSUCC(sample(other), null);
+        Assertions.assertEquals(-1, data.value.get("second").getUnmodifiedSubtreeEnd(newLine));
+        Assertions.assertEquals(expected(sample(newLine)), DataConverter.succFromDataStructure(data.key));
+    }
+
+    @Test
+    public void unloadedSections_renderWithoutBeingParsed() {
+        String succ = sample(Utilities.getNewLine());
+        LoadOptions options = new LoadOptions();
+        options.lazy = true;
+        MemoryDataFile file = new MemoryDataFile(succ, null, null, options);
+        Assertions.assertEquals(expected(succ), file.getRawText());
+        Assertions.assertNotNull(file.getTopLevelNodes().get("second").getUnloadedChildren());
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.falsepattern.succ4j.parsing;
+
+import com.github.falsepattern.succ4j.parsinglogic.DataConverter;
+import com.github.falsepattern.succ4j.parsinglogic.ParsingLogicExtensions;
+import com.github.falsepattern.succ4j.parsinglogic.SuccLineReader;
+import com.github.falsepattern.succ4j.parsinglogic.SuccWriter;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.KeyNode;
+import com.github.falsepattern.succ4j.parsinglogic.nodes.Line;
+import com.github.falsepattern.util.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class Parse_StreamingTests {
+    private static final String sampleSucc = "# leading comment\r\n" +
+            "key: value # trailing comment\r" +
+            "nested:\n" +
+            "    child: 1\r\n" +
+            "    list:\n" +
+            "        - a\r" +
+            "        - b\n" +
+            "\n" +
+            "text: \"\"\"\r\n" +
+            "    first line\n" +
+            "    second line\r" +
+            "    \"\"\"\n" +
+            "last: \\# not a comment\r\n";
+
+    @Test
+    public void lineReader_matchesSplitIntoLines() throws IOException {
+        String[] expected = ParsingLogicExtensions.splitIntoLines(sampleSucc);
+        for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+            Assertions.assertArrayEquals(expected, readAllLines(sampleSucc, bufferSize));
+        }
+        Assertions.assertArrayEquals(new String[]{""}, readAllLines("", 4));
+        Assertions.assertArrayEquals(new String[]{"a", ""}, readAllLines("a\r", 1));
+        Assertions.assertArrayEquals(new String[]{"", "", ""}, readAllLines("\n\r", 1));
+    }
+
+    @Test
+    public void streamingParse_matchesStringParse() {
+        Pair<List<Line>, Map<String, KeyNode>> expected = DataConverter.dataStructureFromSUCC(sampleSucc, null);
+        Pair<List<Line>, Map<String, KeyNode>> fromReader = DataConverter.dataStructureFromSUCC(new StringReader(sampleSucc), null);
+        Pair<List<Line>, Map<String, KeyNode>> fromStream = DataConverter.dataStructureFromSUCC(
+                new ByteArrayInputStream(sampleSucc.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, null);
+        Pair<List<Line>, Map<String, KeyNode>> fromChannel = DataConverter.dataStructureFromSUCC(
+                Channels.newChannel(new ByteArrayInputStream(sampleSucc.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8, null);
+
+        for (Pair<List<Line>, Map<String, KeyNode>> actual : Arrays.asList(fromReader, fromStream, fromChannel)) {
+            Assertions.assertEquals(DataConverter.succFromDataStructure(expected.key), DataConverter.succFromDataStructure(actual.key));
+            Assertions.assertEquals(expected.value.keySet(), actual.value.keySet());
+        }
+    }
+
+    @Test
+    public void byteParse_matchesStringParse() {
+        String unicodeSucc = sampleSucc + "emoji: \uD83D\uDC40 \u00e9\u00e8 # comment \u00fc\r\n    \r\n";
+        Pair<List<Line>, Map<String, KeyNode>> expected = DataConverter.dataStructureFromSUCC(unicodeSucc, null);
+        Pair<List<Line>, Map<String, KeyNode>> actual = DataConverter.dataStructureFromSUCC(ByteBuffer.wrap(unicodeSucc.getBytes(StandardCharsets.UTF_8)), null);
+        Assertions.assertEquals(DataConverter.succFromDataStructure(expected.key), DataConverter.succFromDataStructure(actual.key));
+        Assertions.assertEquals(expected.value.keySet(), actual.value.keySet());
+        Assertions.assertTrue(DataConverter.dataStructureFromSUCC(ByteBuffer.allocate(0), null).key.isEmpty());
+    }
+
+    @Test
+    public void streamingParse_emptyInputHasNoLines() {
+        Assertions.assertTrue(DataConverter.dataStructureFromSUCC(new StringReader(""), null).key.isEmpty());
+    }
+
+    private static String[] readAllLines(String text, int bufferSize) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (SuccLineReader reader = new SuccLineReader(new StringReader(text), bufferSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Test
+    public void succWriter_matchesSuccFromDataStructure() throws IOException {
+        String text = sampleSucc + "trailing: spaces   \n   \n\n  # comment  \n\n\n";
+        List<Line> lines = DataConverter.dataStructureFromSUCC(text, null).key;
+        String expected = DataConverter.succFromDataStructure(lines);
+        Assertions.assertTrue(expected.endsWith("# comment"));
+
+        StringWriter writer = new StringWriter();
+        SuccWriter.write(lines, writer);
+        Assertions.assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SuccWriter.write(lines, Channels.newChannel(bytes), StandardCharsets.UTF_8);
+        Assertions.assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SaveLoad_BatchTests {
+    private static final String sampleSucc = "number: 1\nparent:\n    child: text\n";
+
+    private static class CountingFile extends MemoryDataFile {
+        int saves = 0;
+        int reads = 0;
+
+        CountingFile(String rawFileText) {
+            super(rawFileText);
+        }
+
+        @Override
+        protected String getSavedText() {
+            reads++;
+            return super.getSavedText();
+        }
+
+        @Override
+        public void setSavedText(String text) {
+            saves++;
+            super.setSavedText(text);
+        }
+    }
+
+    @Test
+    public void batch_savesOnce() {
+        CountingFile file = new CountingFile(sampleSucc);
+        file.batch(batch -> {
+            for (int i = 0; i < 100; i++) {
+                batch.set(new ClassTree<>(Integer.class), "number", i);
+            }
+            batch.setAtPath(new ClassTree<>(String.class), "changed", "parent", "child")
+                 .deleteKey("number");
+            Assertions.assertEquals("changed", batch.getAtPath(new ClassTree<>(String.class), "", "parent", "child"));
+        });
+
+        Assertions.assertEquals(1, file.saves);
+        Assertions.assertEquals("parent:\n    child: changed", file.getRawText().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void batch_rollsBackWhenActionsThrow() {
+        CountingFile file = new CountingFile(sampleSucc);
+        String before = file.getRawText();
+        AtomicInteger changes = new AtomicInteger();
+        file.addChangeListener(new String[]{"number"}, event -> changes.incrementAndGet());
+        int reads = file.reads;
+        Assertions.assertThrows(IllegalStateException.class, () -> file.batch(batch -> {
+            batch.set(new ClassTree<>(Integer.class), "number", 2);
+            batch.set(new ClassTree<>(Integer.class), "added", 3);
+            throw new IllegalStateException("stop");
+        }));
+        Assertions.assertEquals(before, file.getRawText());
+        Assertions.assertEquals(0, file.saves);
+        Assertions.assertEquals(reads, file.reads); // put back from memory, not from the saved text
+        Assertions.assertEquals(0, changes.get());
+        Assertions.assertFalse(file.hasUnsavedChanges());
+
+        // unsaved changes made before the batch survive the rollback
+        file.autoSave = false;
+        file.set(new ClassTree<>(Integer.class), "number", 5);
+        Assertions.assertThrows(IllegalStateException.class, () -> file.batch(batch -> {
+            batch.deleteKey("number");
+            throw new IllegalStateException("stop");
+        }));
+        Assertions.assertEquals(5, (int) file.get(new ClassTree<>(Integer.class), "number", 0));
+        Assertions.assertTrue(file.hasUnsavedChanges());
+    }
+
+    @Test
+    public void batch_rollsBackOnlyWhatItChanged() {
+        CountingFile file = new CountingFile("number: 1\nparent:\n    # comment\n    child: text\n\n    other: 2\n\nlast: 3 # note\n");
+        String before = file.getRawText();
+        Object untouched = file.getTopLevelNodes().get("last");
+        Assertions.assertThrows(IllegalStateException.class, () -> file.batch(batch -> {
+            batch.setAtPath(new ClassTree<>(String.class), "changed", "parent", "child")
+                 .deleteKey("number")
+                 .set(new ClassTree<>(Integer.class), "number", 4)
+                 .setAtPath(new ClassTree<>(Integer.class), 5, "parent", "added");
+            throw new IllegalStateException("stop");
+        }));
+        Assertions.assertEquals(before, file.getRawText());
+        Assertions.assertSame(untouched, file.getTopLevelNodes().get("last")); // not copied, so a patch save still knows it
+        Assertions.assertEquals("text", file.getAtPath(new ClassTree<>(String.class), new String[]{"parent", "child"}));
+        Assertions.assertFalse(file.hasUnsavedChanges());
+    }
+
+    @Test
+    public void batch_reloadsWaitForTheBatch() throws InterruptedException {
+        CountingFile file = new CountingFile(sampleSucc);
+        file.autoSave = false;
+        CountDownLatch started = new CountDownLatch(1);
+        Thread batch = new Thread(() -> file.batch(b -> {
+            b.set(new ClassTree<>(Integer.class), "first", 1);
+            started.countDown();
+            try {
+                Thread.sleep(300); // the reload happens in the middle of the batch
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            b.set(new ClassTree<>(Integer.class), "second", 2);
+        }));
+        batch.start();
+        started.await();
+        file.reloadAllData();
+        batch.join();
+
+        // the reload comes after the batch as a whole, so none of it is left, rather than only the second half
+        Assertions.assertFalse(file.keyExists("first"));
+        Assertions.assertFalse(file.keyExists("second"));
+        Assertions.assertFalse(file.hasUnsavedChanges());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void saveAsMap_removesKeysThatAreNotInTheMap() {
+        CountingFile file = new CountingFile(sampleSucc);
+        Map<String, Integer> map = new HashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        ClassTree<Map<?, ?>> mapType = (ClassTree<Map<?, ?>>) ClassTree.parseFromString("java.util.HashMap<java.lang.String, java.lang.Integer>");
+        file.saveAsMap(mapType, map);
+
+        Assertions.assertEquals(1, file.saves);
+        Assertions.assertFalse(file.keyExists("parent"));
+        Assertions.assertFalse(file.getRawText().contains("parent"));
+        Assertions.assertEquals(map, file.getAsMap(mapType));
+    }
+}
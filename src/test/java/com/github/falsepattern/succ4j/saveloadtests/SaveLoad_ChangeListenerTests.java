@@ -0,0 +1,77 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.datafiles.abstractions.ChangeEvent;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class SaveLoad_ChangeListenerTests {
+    private static final String text = "number: 1\nparent:\n    first: a\n    second: b\nother: 2\n";
+
+    @Test
+    public void changeListener_onlyChangedPathsAreNotified() {
+        MemoryDataFile file = new MemoryDataFile(text);
+        List<String> changed = new ArrayList<>();
+        file.addChangeListener(new String[]{"number"}, event -> changed.add("number"));
+        file.addChangeListener(new String[]{"parent"}, event -> changed.add("parent"));
+        file.addChangeListener(new String[]{"parent", "first"}, event -> changed.add("parent.first"));
+        file.addChangeListener(new String[]{"parent", "second"}, event -> changed.add("parent.second"));
+        file.addChangeListener(new String[]{"other"}, event -> changed.add("other"));
+
+        file.reloadAllData();
+        Assertions.assertTrue(changed.isEmpty());
+
+        file.setSavedText(text.replace("second: b", "second: c"));
+        file.reloadAllData();
+        Assertions.assertEquals(2, changed.size());
+        Assertions.assertTrue(changed.contains("parent"));
+        Assertions.assertTrue(changed.contains("parent.second"));
+    }
+
+    @Test
+    public void changeListener_addedAndRemovedData() {
+        MemoryDataFile file = new MemoryDataFile(text);
+        List<ChangeEvent> events = new ArrayList<>();
+        Consumer<ChangeEvent> listener = events::add;
+        file.addChangeListener(new String[]{"number"}, listener);
+        file.addChangeListener(new String[]{"new", "child"}, listener);
+
+        file.setSavedText("new:\n    child: 3\n");
+        file.reloadAllData();
+        Assertions.assertEquals(2, events.size());
+        for (ChangeEvent event : events) {
+            boolean added = event.path[0].equals("new");
+            Assertions.assertEquals(added, event.existsNow);
+            Assertions.assertEquals(!added, event.existedBefore);
+        }
+
+        events.clear();
+        file.removeChangeListener(new String[]{"new", "child"}, listener);
+        file.setSavedText(text);
+        file.reloadAllData();
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertArrayEquals(new String[]{"number"}, events.get(0).path);
+    }
+
+    @Test
+    public void changeListener_failuresAreThrownFromTheReload() {
+        MemoryDataFile file = new MemoryDataFile(text);
+        List<String> changed = new ArrayList<>();
+        file.addChangeListener(new String[]{"number"}, event -> {
+            throw new IllegalStateException("listener");
+        });
+        file.addChangeListener(new String[]{"other"}, event -> changed.add("other"));
+
+        file.setSavedText("number: 5\nother: 6\n");
+        IllegalStateException failure = Assertions.assertThrows(IllegalStateException.class, file::reloadAllData);
+        Assertions.assertEquals("listener", failure.getMessage());
+        Assertions.assertEquals(1, changed.size()); // the other listener still ran
+        Assertions.assertEquals(6, (int) file.get(new ClassTree<>(Integer.class), "other"));
+        Assertions.assertFalse(file.hasUnsavedChanges());
+    }
+}
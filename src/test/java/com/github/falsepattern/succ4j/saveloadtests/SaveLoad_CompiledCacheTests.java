@@ -0,0 +1,73 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.TestUtilities;
+import com.github.falsepattern.succ4j.datafiles.DataFile;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.ReadOnlyDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+public class SaveLoad_CompiledCacheTests {
+    private static LoadOptions cacheOptions() {
+        LoadOptions options = new LoadOptions();
+        options.compiledCache = true;
+        return options;
+    }
+
+    @Test
+    public void compiledCache_loadsTheSameDataAsAParse() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Path cache = Paths.get(fileName + "c");
+        Files.write(path, TestUtilities.sampleFileText.getBytes(StandardCharsets.UTF_8));
+
+        ReadOnlyDataFile parsed = new ReadOnlyDataFile(fileName);
+        ReadOnlyDataFile first = new ReadOnlyDataFile(fileName, "", cacheOptions());
+        Assertions.assertTrue(Files.exists(cache));
+        byte[] cacheBytes = Files.readAllBytes(cache);
+
+        DataFile cached = new DataFile(fileName, "", cacheOptions());
+        Assertions.assertArrayEquals(cacheBytes, Files.readAllBytes(cache));
+        Assertions.assertEquals(parsed.getRawText(), first.getRawText());
+        Assertions.assertEquals(parsed.getRawText(), cached.getRawText());
+        Assertions.assertArrayEquals(new String[]{"number", "nested", "ünïcode", "empty", "last"}, cached.getTopLevelKeysInOrder());
+        Assertions.assertEquals("some\nlines", cached.getAtPath(new ClassTree<>(String.class), new String[]{"nested", "text"}));
+        Assertions.assertEquals("✓ 𝄞", cached.getAtPath(new ClassTree<>(String.class), new String[]{"ünïcode", "välue"}));
+
+        cached.set(new ClassTree<>(Integer.class), "number", 5);
+        Assertions.assertEquals(5, (int) new DataFile(fileName, "", cacheOptions()).get(new ClassTree<>(Integer.class), "number"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void compiledCache_isRebuiltWhenItIsStale() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Path cache = Paths.get(fileName + "c");
+        Files.write(path, "value: 1\n".getBytes(StandardCharsets.UTF_8));
+        FileTime modified = Files.getLastModifiedTime(path);
+        new ReadOnlyDataFile(fileName, "", cacheOptions());
+
+        // same size and same modified time, so only the hash of the contents can tell the cache is stale
+        Files.write(path, "other: 2\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, modified);
+        ReadOnlyDataFile changed = new ReadOnlyDataFile(fileName, "", cacheOptions());
+        Assertions.assertEquals(2, (int) changed.get(new ClassTree<>(Integer.class), "other"));
+        Assertions.assertFalse(changed.keyExists("value"));
+
+        Files.write(cache, Arrays.copyOf(Files.readAllBytes(cache), 30));
+        ReadOnlyDataFile broken = new ReadOnlyDataFile(fileName, "", cacheOptions());
+        Assertions.assertEquals(2, (int) broken.get(new ClassTree<>(Integer.class), "other"));
+        Assertions.assertTrue(Files.size(cache) > 30);
+        TestUtilities.deleteFile(fileName);
+    }
+}
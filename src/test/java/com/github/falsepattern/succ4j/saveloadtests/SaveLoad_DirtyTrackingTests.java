@@ -0,0 +1,121 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.datafiles.SaveOptions;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SaveLoad_DirtyTrackingTests {
+    private static class CountingFile extends MemoryDataFile {
+        volatile int saves = 0;
+        volatile int failuresLeft = 0;
+
+        CountingFile(String rawFileText) {
+            super(rawFileText);
+        }
+
+        @Override
+        public void setSavedText(String text) {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("disk full");
+            }
+            saves++;
+            super.setSavedText(text);
+        }
+    }
+
+    @Test
+    public void dirtyTracking_unchangedDataIsNotSaved() {
+        CountingFile file = new CountingFile("number: 1\nparent:\n    child: text\n");
+        Assertions.assertFalse(file.hasUnsavedChanges());
+
+        file.saveAllData();
+        file.set(new ClassTree<>(Integer.class), "number", 1); // same value as before
+        file.get(new ClassTree<>(String.class), "parent"); // reading doesn't change anything
+        Assertions.assertEquals(0, file.saves);
+
+        file.setAtPath(new ClassTree<>(String.class), "other text", "parent", "child");
+        Assertions.assertEquals(1, file.saves);
+        Assertions.assertFalse(file.hasUnsavedChanges());
+    }
+
+    @Test
+    public void dirtyTracking_changesWithoutAutoSave() {
+        CountingFile file = new CountingFile("number: 1\nparent:\n    child: text\n");
+        file.autoSave = false;
+
+        file.getTopLevelNodes().get("parent").removeChild("child");
+        Assertions.assertTrue(file.hasUnsavedChanges());
+        file.saveAllData();
+        file.saveAllData();
+        Assertions.assertEquals(1, file.saves);
+
+        file.deleteKey("number");
+        Assertions.assertTrue(file.hasUnsavedChanges());
+        file.reloadAllData();
+        Assertions.assertFalse(file.hasUnsavedChanges());
+        Assertions.assertTrue(file.keyExists("number")); // the deletion was never saved
+    }
+
+    private static CountingFile writeBehindFile(long quietMillis, long maxDelayMillis) {
+        CountingFile file = new CountingFile("number: 0\n");
+        file.saveOptions = new SaveOptions();
+        file.saveOptions.writeBehind = true;
+        file.saveOptions.writeBehindQuietMillis = quietMillis;
+        file.saveOptions.writeBehindMaxDelayMillis = maxDelayMillis;
+        return file;
+    }
+
+    @Test
+    public void writeBehind_coalescesChangesUntilFlush() {
+        CountingFile file = writeBehindFile(60000, 60000);
+        for (int i = 1; i <= 1000; i++) {
+            file.set(new ClassTree<>(Integer.class), "number", i);
+        }
+        Assertions.assertEquals(0, file.saves);
+        Assertions.assertTrue(file.hasUnsavedChanges());
+
+        file.close();
+        Assertions.assertEquals(1, file.saves);
+        Assertions.assertFalse(file.hasUnsavedChanges());
+        Assertions.assertEquals("number: 1000", file.getRawText().trim());
+    }
+
+    @Test
+    public void writeBehind_savesAfterQuietPeriod() throws InterruptedException {
+        CountingFile file = writeBehindFile(20, 60000);
+        for (int i = 1; i <= 10; i++) {
+            file.set(new ClassTree<>(Integer.class), "number", i);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (file.hasUnsavedChanges() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertFalse(file.hasUnsavedChanges());
+        Assertions.assertEquals(1, file.saves);
+    }
+
+    @Test
+    public void writeBehind_failuresAreThrownFromFlush() throws InterruptedException {
+        CountingFile file = writeBehindFile(20, 60000);
+        file.failuresLeft = 1;
+        file.set(new ClassTree<>(Integer.class), "number", 1);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (file.failuresLeft > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        Assertions.assertTrue(file.hasUnsavedChanges());
+
+        // the changes are saved by the flush, but the failure before it is still reported, once
+        IllegalStateException failure = Assertions.assertThrows(IllegalStateException.class, file::flush);
+        Assertions.assertEquals("disk full", failure.getMessage());
+        Assertions.assertFalse(file.hasUnsavedChanges());
+        Assertions.assertEquals(1, file.saves);
+        file.close();
+    }
+}
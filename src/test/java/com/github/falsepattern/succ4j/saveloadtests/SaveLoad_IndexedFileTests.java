@@ -0,0 +1,98 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.TestUtilities;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.ReadOnlyDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SaveLoad_IndexedFileTests {
+    private static LoadOptions indexedOptions() {
+        LoadOptions options = new LoadOptions();
+        options.indexed = true;
+        return options;
+    }
+
+    @Test
+    public void indexed_loadsTheSameDataAsAParse() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Path index = Paths.get(fileName + "i");
+        Files.write(path, TestUtilities.sampleFileText.getBytes(StandardCharsets.UTF_8));
+
+        ReadOnlyDataFile parsed = new ReadOnlyDataFile(fileName);
+        ReadOnlyDataFile first = new ReadOnlyDataFile(fileName, "", indexedOptions());
+        Assertions.assertTrue(Files.exists(index));
+        ReadOnlyDataFile indexed = new ReadOnlyDataFile(fileName, "", indexedOptions());
+
+        Assertions.assertEquals(parsed.getRawText(), first.getRawText());
+        Assertions.assertEquals("✓ 𝄞", indexed.getAtPath(new ClassTree<>(String.class), new String[]{"ünïcode", "välue"}));
+        Assertions.assertEquals("some\nlines", indexed.getAtPath(new ClassTree<>(String.class), new String[]{"nested", "text"}));
+        Assertions.assertEquals(3, (int) indexed.get(new ClassTree<>(Integer.class), "last"));
+        Assertions.assertArrayEquals(parsed.getTopLevelKeysInOrder(), indexed.getTopLevelKeysInOrder());
+        Assertions.assertEquals(parsed.getRawText(), indexed.getRawText());
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void indexed_onlyReadsTheSectionsThatAreUsed() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a:\n    value: 1\nb:\n    value: 2\n".getBytes(StandardCharsets.UTF_8));
+        new ReadOnlyDataFile(fileName, "", indexedOptions());
+
+        // the same size and modified time, so the index still looks up to date
+        FileTime modified = Files.getLastModifiedTime(path);
+        Files.write(path, "a:\n    value: 1\nb:\n    value: 5\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, modified);
+        ReadOnlyDataFile indexed = new ReadOnlyDataFile(fileName, "", indexedOptions());
+        Assertions.assertEquals(5, (int) indexed.getAtPath(new ClassTree<>(Integer.class), new String[]{"b", "value"}));
+
+        // a different size, so the index is made again
+        Files.write(path, "a:\n    value: 10\nb:\n    value: 20\n".getBytes(StandardCharsets.UTF_8));
+        indexed = new ReadOnlyDataFile(fileName, "", indexedOptions());
+        Assertions.assertEquals(10, (int) indexed.getAtPath(new ClassTree<>(Integer.class), new String[]{"a", "value"}));
+        Assertions.assertEquals(20, (int) indexed.getAtPath(new ClassTree<>(Integer.class), new String[]{"b", "value"}));
+
+        // "a" was never used, so it is read from the file now, which doesn't match the index anymore
+        ReadOnlyDataFile stale = new ReadOnlyDataFile(fileName, "", indexedOptions());
+        Files.write(path, "a:\n    value: 100\n".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(RuntimeException.class, () -> stale.getAtPath(new ClassTree<>(Integer.class), new String[]{"a", "value"}));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void indexed_changeListenersAfterReload() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a:\n    value: 1\nb:\n    value: 2\nc: 3\n".getBytes(StandardCharsets.UTF_8));
+        ReadOnlyDataFile indexed = new ReadOnlyDataFile(fileName, "", indexedOptions());
+        List<String> changed = new ArrayList<>();
+        indexed.addChangeListener(new String[]{"a", "value"}, event -> changed.add("a.value"));
+        indexed.addChangeListener(new String[]{"b"}, event -> changed.add("b"));
+        indexed.addChangeListener(new String[]{"c"}, event -> changed.add("c"));
+
+        // the sections of the old data are read from a file that has changed since, so they have to be loaded already
+        Files.write(path, "a:\n    value: 1\nb:\n    value: 20\nc: 3\n".getBytes(StandardCharsets.UTF_8));
+        indexed.reloadAllData();
+        Assertions.assertEquals(Collections.singletonList("b"), changed);
+        Assertions.assertEquals(20, (int) indexed.getAtPath(new ClassTree<>(Integer.class), new String[]{"b", "value"}));
+
+        changed.clear();
+        Files.write(path, "a:\n    value: 100\nb:\n    value: 20\nc: 3\n".getBytes(StandardCharsets.UTF_8));
+        indexed.reloadAllData();
+        Assertions.assertEquals(Collections.singletonList("a.value"), changed);
+        TestUtilities.deleteFile(fileName);
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.TestUtilities;
+import com.github.falsepattern.succ4j.datafiles.DataFile;
+import com.github.falsepattern.succ4j.datafiles.ReadOnlyDataFile;
+import com.github.falsepattern.succ4j.datafiles.SaveOptions;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class SaveLoad_JournalTests {
+    private static SaveOptions journalOptions() {
+        SaveOptions options = new SaveOptions();
+        options.journal = true;
+        return options;
+    }
+
+    @Test
+    public void journal_changesAreAppendedAndReplayed() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Path journal = Paths.get(fileName + ".journal");
+        DataFile file = new DataFile(fileName, "kept: 1\nnested:\n    value: 2\ndeleted: 3\n");
+        file.saveOptions = journalOptions();
+        byte[] before = Files.readAllBytes(path);
+
+        for (int i = 0; i < 50; i++) {
+            file.set(new ClassTree<>(Integer.class), "counter", i);
+        }
+        file.setAtPath(new ClassTree<>(String.class), "changed", "nested", "value");
+        file.deleteKey("deleted");
+        file.saveAllData();
+
+        Assertions.assertArrayEquals(before, Files.readAllBytes(path));
+        Assertions.assertTrue(Files.exists(journal));
+
+        DataFile otherFile = new DataFile(fileName);
+        ReadOnlyDataFile readOnlyFile = new ReadOnlyDataFile(fileName);
+        Assertions.assertEquals(file.getRawText(), otherFile.getRawText());
+        Assertions.assertEquals(file.getRawText(), readOnlyFile.getRawText());
+        Assertions.assertEquals(49, (int) otherFile.get(new ClassTree<>(Integer.class), "counter"));
+        Assertions.assertFalse(otherFile.keyExists("deleted"));
+
+        file.saveOptions = new SaveOptions(); // the next save is a regular one, which compacts the journal
+        file.set(new ClassTree<>(Integer.class), "kept", 5);
+        Assertions.assertFalse(Files.exists(journal));
+        Assertions.assertEquals(5, (int) new DataFile(fileName).get(new ClassTree<>(Integer.class), "kept"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void journal_ignoresRecordsCutOffByACrash() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path journal = Paths.get(fileName + ".journal");
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = journalOptions();
+        file.set(new ClassTree<>(Integer.class), "value", 1);
+        long goodSize = Files.size(journal);
+
+        Files.write(journal, "set 100 12345678\nvalue: 2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        DataFile otherFile = new DataFile(fileName);
+        otherFile.saveOptions = journalOptions();
+        Assertions.assertEquals(1, (int) otherFile.get(new ClassTree<>(Integer.class), "value"));
+        Assertions.assertEquals(goodSize, Files.size(journal));
+
+        otherFile.set(new ClassTree<>(Integer.class), "value", 3);
+        Assertions.assertEquals(3, (int) new DataFile(fileName).get(new ClassTree<>(Integer.class), "value"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void journal_replayedChangesCountAsSaved() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Path journal = Paths.get(fileName + ".journal");
+        DataFile file = new DataFile(fileName, "kept: 1\n");
+        file.saveOptions = journalOptions();
+        file.set(new ClassTree<>(Integer.class), "value", 1);
+        byte[] before = Files.readAllBytes(path);
+        long journalSize = Files.size(journal);
+
+        DataFile otherFile = new DataFile(fileName);
+        otherFile.saveOptions = journalOptions();
+        Assertions.assertFalse(otherFile.hasUnsavedChanges());
+
+        otherFile.set(new ClassTree<>(Integer.class), "value", 2); // still only needs a journal record, not a full rewrite
+        Assertions.assertArrayEquals(before, Files.readAllBytes(path));
+        Assertions.assertTrue(Files.size(journal) > journalSize);
+        Assertions.assertEquals(2, (int) new DataFile(fileName).get(new ClassTree<>(Integer.class), "value"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void journal_isCompactedOnceItIsBigEnough() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path journal = Paths.get(fileName + ".journal");
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = journalOptions();
+        file.saveOptions.journalCompactionBytes = 200;
+
+        boolean sawJournal = false;
+        for (int i = 0; i < 20; i++) {
+            file.set(new ClassTree<>(Integer.class), "value", i);
+            sawJournal |= Files.exists(journal);
+        }
+        Assertions.assertTrue(sawJournal);
+        Assertions.assertTrue(!Files.exists(journal) || Files.size(journal) <= 200);
+        Assertions.assertEquals(19, (int) new ReadOnlyDataFile(fileName).get(new ClassTree<>(Integer.class), "value"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void journal_isCompactedOnceItIsOldEnough() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path journal = Paths.get(fileName + ".journal");
+        DataFile file = new DataFile(fileName, "value: 0\n");
+        file.saveOptions = journalOptions();
+        file.saveOptions.journalCompactionMillis = 100;
+
+        file.set(new ClassTree<>(Integer.class), "value", 1);
+        Assertions.assertTrue(Files.exists(journal));
+        Thread.sleep(1000); // nothing else is saved, so only the scheduled compaction gets rid of the journal
+        Assertions.assertFalse(Files.exists(journal));
+        Assertions.assertFalse(file.hasUnsavedChanges());
+        Assertions.assertEquals(1, (int) new DataFile(fileName).get(new ClassTree<>(Integer.class), "value"));
+        TestUtilities.deleteFile(fileName);
+    }
+}
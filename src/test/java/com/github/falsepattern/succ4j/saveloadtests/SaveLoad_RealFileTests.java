@@ -1,34 +1,56 @@
 package com.github.falsepattern.succ4j.saveloadtests;
 
+import com.github.falsepattern.succ4j.TestUtilities;
+import com.github.falsepattern.util.CustomFileWatcher;
+import com.github.falsepattern.util.FileWatcherBackend;
+import com.github.falsepattern.util.PollingFileWatcherBackend;
 import com.github.falsepattern.util.reflectionhelper.ClassTree;
 import com.github.falsepattern.succ4j.datafiles.DataFile;
+import com.github.falsepattern.succ4j.datafiles.DurabilityMode;
+import com.github.falsepattern.succ4j.datafiles.FileFingerprint;
+import com.github.falsepattern.succ4j.datafiles.LoadOptions;
+import com.github.falsepattern.succ4j.datafiles.ReadOnlyDataFile;
+import com.github.falsepattern.succ4j.datafiles.SaveOptions;
+import com.github.falsepattern.succ4j.datafiles.SaveStrategy;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
-import com.github.falsepattern.succ4j.Utilities;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 
 public class SaveLoad_RealFileTests {
     private static final String savedValueKey = "test key";
 
     @Test
     public void saveLoad_WriteAndReadFromFile() throws IOException {
-        String fileName = generateUniqueFilePath();
+        String fileName = TestUtilities.generateUniqueFilePath();
         String savedValue = "test value";
         DataFile file = new DataFile(fileName);
         file.set(new ClassTree<>(String.class), savedValueKey, savedValue);
         DataFile otherFile = new DataFile(fileName);
         String loadedValue = otherFile.get(new ClassTree<>(String.class), savedValueKey);
         Assertions.assertEquals(savedValue, loadedValue);
-        deleteFile(fileName);
+        TestUtilities.deleteFile(fileName);
     }
 
     @Test
     public void saveLoad_TestAutoReload() throws InterruptedException, IOException {
-        String fileName = generateUniqueFilePath();
+        String fileName = TestUtilities.generateUniqueFilePath();
         String savedValueA = "test1";
         String savedValueB = "test2";
         DataFile file = new DataFile(fileName);
@@ -36,24 +58,517 @@ public class SaveLoad_RealFileTests {
         file.setAutoReload(true);
         DataFile otherFile = new DataFile(fileName);
         otherFile.set(new ClassTree<>(String.class), savedValueKey, savedValueB);
-        Thread.sleep(1500); // await auto-update
-        String loadedValue = file.get(new ClassTree<>(String.class), savedValueKey);
-        Assertions.assertEquals(savedValueB, loadedValue);
+        Assertions.assertTrue(waitFor(() -> hasValue(file, savedValueB))); // await auto-update
         file.setAutoReload(false);
         otherFile.setAutoReload(false);
-        deleteFile(fileName);
+        TestUtilities.deleteFile(fileName);
     }
 
-    private static String generateUniqueFilePath() {
-        String filePath;
-        do {
-            filePath = Utilities.absolutePath(UUID.randomUUID().toString() + ".succ");
-        } while (Files.exists(Paths.get(filePath)));
-        return filePath;
+    @Test
+    public void saveLoad_ReadMemoryMappedFile() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        String savedValue = "test value \u00e9";
+        DataFile file = new DataFile(fileName);
+        file.set(new ClassTree<>(String.class), savedValueKey, savedValue);
+        LoadOptions options = new LoadOptions();
+        options.memoryMapped = true;
+        ReadOnlyDataFile otherFile = new ReadOnlyDataFile(fileName, null, options);
+        String loadedValue = otherFile.get(new ClassTree<>(String.class), savedValueKey);
+        Assertions.assertEquals(savedValue, loadedValue);
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_PatchedSavesMatchFullSaves() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = new SaveOptions();
+        file.saveOptions.saveStrategy = SaveStrategy.patch;
+        file.batch(batch -> {
+            for (int i = 0; i < 2000; i++) { // big enough to take up several blocks
+                batch.set(new ClassTree<>(Integer.class), "key " + i, i);
+            }
+            batch.set(new ClassTree<>(Integer.class), "counter", 10);
+        });
+        assertFileHasText(fileName, file);
+
+        file.set(new ClassTree<>(Integer.class), "counter", 11); // same length
+        assertFileHasText(fileName, file);
+        file.set(new ClassTree<>(Integer.class), "key 5", 1000); // longer
+        assertFileHasText(fileName, file);
+        file.deleteKey("key 1000"); // shorter
+        file.saveAllData();
+        assertFileHasText(fileName, file);
+        file.setAtPath(new ClassTree<>(Integer.class), 1, new String[]{"nested", "value"}); // added at the end
+        assertFileHasText(fileName, file);
+        file.setAtPath(new ClassTree<>(Integer.class), 2, new String[]{"nested", "value"}); // in a nested node
+        assertFileHasText(fileName, file);
+        file.deleteKey("nested"); // the end of the file moves back
+        file.saveAllData();
+        assertFileHasText(fileName, file);
+
+        DataFile otherFile = new DataFile(fileName);
+        Assertions.assertEquals(11, (int) otherFile.get(new ClassTree<>(Integer.class), "counter"));
+        Assertions.assertEquals(1000, (int) otherFile.get(new ClassTree<>(Integer.class), "key 5"));
+        Assertions.assertFalse(otherFile.keyExists("key 1000"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_AtomicSavesReplaceTheFile() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        file.set(new ClassTree<>(String.class), savedValueKey, "test1");
+        file.setAutoReload(true);
+        Thread.sleep(quietMillis); // let the watcher see the save above, so that only the atomic save below can reload the file
+
+        DataFile otherFile = new DataFile(fileName);
+        otherFile.saveOptions = new SaveOptions();
+        otherFile.saveOptions.saveStrategy = SaveStrategy.atomic;
+        otherFile.saveOptions.durability = DurabilityMode.fsync_data_and_dir;
+        otherFile.set(new ClassTree<>(String.class), savedValueKey, "test2");
+        assertFileHasText(fileName, otherFile);
+
+        Path directory = Paths.get(fileName).getParent();
+        String name = Paths.get(fileName).getFileName().toString();
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(1, files.filter(path -> path.getFileName().toString().startsWith(name)).count()); // no temp files left behind
+        }
+
+        Assertions.assertTrue(waitFor(() -> hasValue(file, "test2"))); // await auto-update
+        file.setAutoReload(false);
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_AutoReloadFilesInTheSameDirectory() throws IOException, InterruptedException {
+        Path directory = Paths.get(TestUtilities.generateUniqueFilePath()).resolveSibling(UUID.randomUUID().toString());
+        DataFile fileA = new DataFile(directory.resolve("a.succ").toString());
+        DataFile fileB = new DataFile(directory.resolve("b.succ").toString());
+        fileA.setAutoReload(true);
+        fileB.setAutoReload(true);
+        fileA.setAutoReload(false); // the directory is still watched for the other file
+
+        new DataFile(fileA.getFilePath()).set(new ClassTree<>(String.class), savedValueKey, "a");
+        new DataFile(fileB.getFilePath()).set(new ClassTree<>(String.class), savedValueKey, "b");
+        Assertions.assertTrue(waitFor(() -> hasValue(fileB, "b"))); // await auto-update
+        Thread.sleep(quietMillis); // the other file was changed first, so it would have been reloaded by now
+        Assertions.assertFalse(fileA.keyExists(savedValueKey));
+
+        fileB.setAutoReload(false);
+        TestUtilities.deleteFile(fileA.getFilePath());
+        TestUtilities.deleteFile(fileB.getFilePath());
+        Files.delete(directory);
+    }
+
+    @Test
+    public void saveLoad_AutoReloadMergesBurstsOfChanges() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        AtomicInteger reloads = new AtomicInteger();
+        Runnable reload = file.onAutoReload;
+        file.onAutoReload = () -> {
+            reloads.incrementAndGet();
+            reload.run();
+        };
+        file.setAutoReload(true);
+
+        long debounceMillis = CustomFileWatcher.debounceMillis;
+        CustomFileWatcher.debounceMillis = 500;
+        try {
+            for (int i = 0; i < 5; i++) {
+                Files.write(Paths.get(fileName), (savedValueKey + ": value " + i).getBytes(StandardCharsets.UTF_8));
+            }
+            Assertions.assertTrue(waitFor(() -> reloads.get() > 0)); // await auto-update
+            Thread.sleep(quietMillis); // no more reloads after that one
+        } finally {
+            CustomFileWatcher.debounceMillis = debounceMillis;
+        }
+
+        Assertions.assertEquals(1, reloads.get());
+        Assertions.assertEquals("value 4", file.get(new ClassTree<>(String.class), savedValueKey));
+        file.setAutoReload(false);
+        TestUtilities.deleteFile(fileName);
     }
 
-    private static void deleteFile(String path) throws IOException {
-        Files.delete(Paths.get(path));
+    @Test
+    public void saveLoad_SlowReloadsDontHoldUpOtherFiles() throws IOException, InterruptedException {
+        DataFile slowFile = new DataFile(TestUtilities.generateUniqueFilePath());
+        DataFile fastFile = new DataFile(TestUtilities.generateUniqueFilePath());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        CountDownLatch fastReloaded = new CountDownLatch(1);
+        AtomicBoolean slowWasRunning = new AtomicBoolean();
+        Runnable slowReload = slowFile.onAutoReload;
+        slowFile.onAutoReload = () -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                fastReloaded.await(timeoutMillis, TimeUnit.MILLISECONDS); // the slow reload doesn't finish before the fast one
+            } catch (InterruptedException ignored) {}
+            slowReload.run();
+            running.decrementAndGet();
+        };
+        Runnable fastReload = fastFile.onAutoReload;
+        fastFile.onAutoReload = () -> {
+            fastReload.run();
+            slowWasRunning.set(running.get() > 0);
+            fastReloaded.countDown();
+        };
+        slowFile.setAutoReload(true);
+        fastFile.setAutoReload(true);
+
+        Files.write(Paths.get(slowFile.getFilePath()), (savedValueKey + ": slow 1").getBytes(StandardCharsets.UTF_8));
+        Assertions.assertTrue(waitFor(() -> running.get() > 0)); // the slow reload has started
+        Files.write(Paths.get(slowFile.getFilePath()), (savedValueKey + ": slow 2").getBytes(StandardCharsets.UTF_8));
+        Files.write(Paths.get(fastFile.getFilePath()), (savedValueKey + ": fast").getBytes(StandardCharsets.UTF_8));
+        Assertions.assertTrue(fastReloaded.await(timeoutMillis, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(slowWasRunning.get());
+        Assertions.assertEquals("fast", fastFile.get(new ClassTree<>(String.class), savedValueKey));
+
+        // the slow file reloads once more, after the first reload is done
+        Assertions.assertTrue(waitFor(() -> hasValue(slowFile, "slow 2")));
+        Assertions.assertEquals(1, mostRunning.get());
+        slowFile.setAutoReload(false);
+        fastFile.setAutoReload(false);
+        TestUtilities.deleteFile(slowFile.getFilePath());
+        TestUtilities.deleteFile(fastFile.getFilePath());
     }
 
+    @Test
+    public void saveLoad_AutoReloadSkipsFilesThatDidntChange() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        DataFile file = new DataFile(fileName);
+        file.set(new ClassTree<>(String.class), savedValueKey, "saved");
+        FileFingerprint saved = file.getFingerprint();
+        Assertions.assertEquals(FileFingerprint.of(path), saved);
+
+        file.autoSave = false;
+        file.set(new ClassTree<>(String.class), "unsaved key", "unsaved"); // a reload would throw this away
+        AtomicInteger checks = new AtomicInteger();
+        Runnable reload = file.onAutoReload;
+        file.onAutoReload = () -> {
+            reload.run();
+            checks.incrementAndGet();
+        };
+        file.setAutoReload(true);
+        Files.write(path, Files.readAllBytes(path)); // the same contents
+        Assertions.assertTrue(waitFor(() -> checks.get() > 0)); // await auto-update
+        Assertions.assertTrue(file.keyExists("unsaved key"));
+        Assertions.assertTrue(saved.hasSameContents(file.getFingerprint()));
+
+        Files.write(path, (savedValueKey + ": changed").getBytes(StandardCharsets.UTF_8));
+        Assertions.assertTrue(waitFor(() -> !file.keyExists("unsaved key"))); // await auto-update
+        Assertions.assertEquals("changed", file.get(new ClassTree<>(String.class), savedValueKey));
+        Assertions.assertEquals(FileFingerprint.of(path), file.getFingerprint());
+        Assertions.assertEquals(Files.size(path), file.getSizeOnDisk());
+        file.setAutoReload(false);
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_FingerprintDoesntReadTheFileAgain() throws IOException {
+        Path io = Paths.get("/proc/self/io"); // counts the bytes this process has read, but only exists on Linux
+        Assumptions.assumeTrue(Files.isReadable(io));
+
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        file.batch(batch -> {
+            for (int i = 0; i < 20000; i++) { // about a megabyte
+                batch.set(new ClassTree<>(String.class), "key " + i, "some text to make the file bigger " + i);
+            }
+        });
+        long size = Files.size(Paths.get(fileName));
+
+        long readBefore = bytesRead(io);
+        file.set(new ClassTree<>(String.class), savedValueKey, "changed");
+        Assertions.assertTrue(bytesRead(io) - readBefore < size / 2); // saving with auto reload off doesn't read the file back
+
+        readBefore = bytesRead(io);
+        DataFile otherFile = new DataFile(fileName);
+        Assertions.assertTrue(bytesRead(io) - readBefore < size * 3 / 2); // loading reads the file once
+        Assertions.assertEquals(FileFingerprint.of(Paths.get(fileName)), otherFile.getFingerprint());
+        Assertions.assertEquals(FileFingerprint.of(Paths.get(fileName)), file.getFingerprint());
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_PatchedSavesKeepWhitespace() throws IOException {
+        for (DurabilityMode durability : new DurabilityMode[]{DurabilityMode.none, DurabilityMode.fsync_data}) { // in place, and replaced
+            patchedSavesKeepWhitespace(durability);
+        }
+    }
+
+    private static void patchedSavesKeepWhitespace(DurabilityMode durability) throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Files.write(Paths.get(fileName), "a: 1   \n\n# comment\nb: 2\n\n\n".getBytes(StandardCharsets.UTF_8));
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = new SaveOptions();
+        file.saveOptions.saveStrategy = SaveStrategy.patch;
+        file.saveOptions.durability = durability;
+        file.set(new ClassTree<>(Integer.class), "a", 3);
+        assertFileHasText(fileName, file);
+
+        file.set(new ClassTree<>(Integer.class), "c", 4); // after the whitespace that was cut off
+        assertFileHasText(fileName, file);
+        file.deleteKey("c");
+        file.deleteKey("b");
+        file.saveAllData();
+        assertFileHasText(fileName, file);
+        file.set(new ClassTree<>(Integer.class), "a", 30); // everything after it is whitespace and a comment
+        assertFileHasText(fileName, file);
+        Assertions.assertEquals(30, (int) new DataFile(fileName).get(new ClassTree<>(Integer.class), "a"));
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_PatchedSavesNoticeOtherChanges() throws IOException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = new SaveOptions();
+        file.saveOptions.saveStrategy = SaveStrategy.patch;
+        file.set(new ClassTree<>(Integer.class), "first", 10);
+        file.set(new ClassTree<>(Integer.class), "second", 20);
+
+        // another program changes the file, without changing its size
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Files.write(path, text.replace("first", "FIRST").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 10_000));
+
+        file.set(new ClassTree<>(Integer.class), "second", 21);
+        assertFileHasText(fileName, file); // written whole, rather than patched into the other program's text
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_PatchedSavesOnlyWriteWhatChanged() throws IOException {
+        Path io = Paths.get("/proc/self/io"); // counts the bytes this process has read and written, but only exists on Linux
+        Assumptions.assumeTrue(Files.isReadable(io));
+
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        file.saveOptions = new SaveOptions();
+        file.saveOptions.saveStrategy = SaveStrategy.patch;
+        file.batch(batch -> {
+            batch.set(new ClassTree<>(Integer.class), "counter", 10);
+            for (int i = 0; i < 20000; i++) { // about a megabyte
+                batch.set(new ClassTree<>(String.class), "key " + i, "some text to make the file bigger " + i);
+            }
+        });
+        long size = Files.size(Paths.get(fileName));
+
+        long readBefore = bytesRead(io);
+        long writtenBefore = bytesWritten(io);
+        file.set(new ClassTree<>(Integer.class), "counter", 11); // same length, at the start of the file
+        Assertions.assertTrue(bytesWritten(io) - writtenBefore < size / 2);
+        Assertions.assertTrue(bytesRead(io) - readBefore < size / 2);
+        assertFileHasText(fileName, file);
+        TestUtilities.deleteFile(fileName);
+    }
+
+    private static long bytesRead(Path io) throws IOException {
+        return ioCount(io, "rchar:");
+    }
+
+    private static long bytesWritten(Path io) throws IOException {
+        return ioCount(io, "wchar:");
+    }
+
+    private static long ioCount(Path io, String name) throws IOException {
+        for (String line : Files.readAllLines(io)) {
+            if (line.startsWith(name)) {
+                return Long.parseLong(line.substring(name.length()).trim());
+            }
+        }
+        throw new IllegalStateException("No " + name + " in " + io);
+    }
+
+    @Test
+    public void saveLoad_AutoReloadWithPollingBackend() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        DataFile file = new DataFile(fileName);
+        file.set(new ClassTree<>(String.class), savedValueKey, "test1");
+
+        FileWatcherBackend backend = CustomFileWatcher.backend;
+        PollingFileWatcherBackend pollingBackend = new PollingFileWatcherBackend(100);
+        CustomFileWatcher.backend = pollingBackend;
+        try {
+            file.setAutoReload(true);
+        } finally {
+            CustomFileWatcher.backend = backend;
+        }
+
+        DataFile otherFile = new DataFile(fileName);
+        otherFile.set(new ClassTree<>(String.class), savedValueKey, "test 2"); // a different size, in case the modified time doesn't change
+        Assertions.assertTrue(waitFor(() -> hasValue(file, "test 2"))); // await auto-update
+        file.setAutoReload(false);
+        pollingBackend.close();
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_PollingBackendWorksAfterClose() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a: 1\n".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger changes = new AtomicInteger();
+
+        PollingFileWatcherBackend pollingBackend = new PollingFileWatcherBackend(100);
+        try {
+            pollingBackend.watch(path, changes::incrementAndGet);
+            pollingBackend.close();
+            pollingBackend.watch(path, changes::incrementAndGet); // polls again
+            Files.write(path, "a: 22\n".getBytes(StandardCharsets.UTF_8)); // a different size, in case the modified time doesn't change
+            Assertions.assertTrue(waitFor(() -> changes.get() > 0));
+        } finally {
+            pollingBackend.close();
+        }
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_WatcherCallbackErrorsGoToTheHandler() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a: 1\n".getBytes(StandardCharsets.UTF_8));
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger runs = new AtomicInteger();
+        Runnable failing = () -> {
+            throw new IllegalStateException("callback");
+        };
+        Runnable counting = runs::incrementAndGet;
+
+        CustomFileWatcher.errorHandler = errors::add;
+        try {
+            CustomFileWatcher.addCallback(fileName, failing);
+            CustomFileWatcher.addCallback(fileName, counting);
+            Files.write(path, "a: 2\n".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(waitFor(() -> runs.get() > 0)); // the callback after the failing one still runs
+            Assertions.assertEquals("callback", errors.get(0).getMessage());
+        } finally {
+            CustomFileWatcher.removeCallback(fileName, failing);
+            CustomFileWatcher.removeCallback(fileName, counting);
+            CustomFileWatcher.errorHandler = null;
+        }
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_WatcherKeepsWatchingAfterAnError() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a: 1\n".getBytes(StandardCharsets.UTF_8));
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger runs = new AtomicInteger();
+        Runnable failing = () -> {
+            runs.incrementAndGet();
+            throw new AssertionError("callback");
+        };
+
+        CustomFileWatcher.errorHandler = errors::add;
+        try {
+            CustomFileWatcher.addCallback(fileName, failing);
+            Files.write(path, "a: 2\n".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(waitFor(() -> !errors.isEmpty()));
+            Assertions.assertEquals("callback", errors.get(0).getMessage());
+
+            int before = runs.get();
+            Files.write(path, "a: 33\n".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(waitFor(() -> runs.get() > before)); // the Error didn't leave the file counting as running
+        } finally {
+            CustomFileWatcher.removeCallback(fileName, failing);
+            CustomFileWatcher.errorHandler = null;
+        }
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_WatcherWorksAfterTerminate() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a: 1\n".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger runs = new AtomicInteger();
+        Runnable counting = runs::incrementAndGet;
+
+        CustomFileWatcher.terminate();
+        try {
+            CustomFileWatcher.addCallback(fileName, counting); // the backend starts again
+            Files.write(path, "a: 2\n".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(waitFor(() -> runs.get() > 0));
+        } finally {
+            CustomFileWatcher.removeCallback(fileName, counting);
+        }
+        TestUtilities.deleteFile(fileName);
+    }
+
+    @Test
+    public void saveLoad_WatcherWaitsUntilChangesStop() throws IOException, InterruptedException {
+        String fileName = TestUtilities.generateUniqueFilePath();
+        Path path = Paths.get(fileName);
+        Files.write(path, "a: 0\n".getBytes(StandardCharsets.UTF_8));
+        AtomicInteger runs = new AtomicInteger();
+        Runnable counting = runs::incrementAndGet;
+
+        long debounceMillis = CustomFileWatcher.debounceMillis;
+        long maxDebounceMillis = CustomFileWatcher.maxDebounceMillis;
+        CustomFileWatcher.debounceMillis = quietMillis;
+        CustomFileWatcher.maxDebounceMillis = 60000;
+        try {
+            CustomFileWatcher.addCallback(fileName, counting);
+            for (int i = 1; i <= 20; i++) { // a change every 50ms for a second, each one starting the wait over
+                Files.write(path, ("a: " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(0, runs.get());
+            Assertions.assertTrue(waitFor(() -> runs.get() > 0));
+            Thread.sleep(quietMillis); // and only once
+            Assertions.assertEquals(1, runs.get());
+
+            // a file that never stops changing still runs its callbacks once the first change is old enough
+            CustomFileWatcher.maxDebounceMillis = 400;
+            runs.set(0);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (int i = 1; runs.get() == 0 && System.currentTimeMillis() < deadline; i++) {
+                Files.write(path, ("a: " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                Thread.sleep(50);
+            }
+            Assertions.assertTrue(runs.get() > 0);
+        } finally {
+            CustomFileWatcher.removeCallback(fileName, counting);
+            CustomFileWatcher.debounceMillis = debounceMillis;
+            CustomFileWatcher.maxDebounceMillis = maxDebounceMillis;
+        }
+        TestUtilities.deleteFile(fileName);
+    }
+
+    // How long to wait for something that should happen. Waiting stops as soon as it does, so this can be generous.
+    private static final long timeoutMillis = 10000;
+    // How long to wait before checking that something did not happen. A lot longer than the watcher needs to notice a change.
+    private static final long quietMillis = 1000;
+
+    /**
+     * Waits until the condition is true, or the timeout is up.
+     * @return Whether the condition became true.
+     */
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    // Reading a key that doesn't exist would save it, so it's checked first.
+    private static boolean hasValue(DataFile file, String value) {
+        return file.keyExists(savedValueKey) && value.equals(file.get(new ClassTree<>(String.class), savedValueKey));
+    }
+
+    private static void assertFileHasText(String fileName, DataFile file) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+        Assertions.assertEquals(file.getRawText() + System.lineSeparator(), text);
+    }
 }
@@ -0,0 +1,61 @@
+package com.github.falsepattern.succ4j.saveloadtests;
+
+import com.github.falsepattern.succ4j.TestUtilities;
+import com.github.falsepattern.succ4j.datafiles.DataFile;
+import com.github.falsepattern.succ4j.datafiles.DurabilityMode;
+import com.github.falsepattern.succ4j.datafiles.SaveCoordinator;
+import com.github.falsepattern.succ4j.datafiles.SaveOptions;
+import com.github.falsepattern.succ4j.datafiles.SaveStrategy;
+import com.github.falsepattern.succ4j.datafiles.memoryfiles.MemoryDataFile;
+import com.github.falsepattern.util.reflectionhelper.ClassTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SaveLoad_SaveCoordinatorTests {
+    @Test
+    public void saveChanges_savesEveryChangedFile() throws Exception {
+        SaveOptions options = new SaveOptions();
+        options.saveStrategy = SaveStrategy.atomic;
+        options.durability = DurabilityMode.fsync_data_and_dir;
+
+        SaveCoordinator coordinator = new SaveCoordinator();
+        List<DataFile> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            DataFile file = new DataFile(TestUtilities.generateUniqueFilePath());
+            file.autoSave = false;
+            file.saveOptions = options;
+            coordinator.add(file);
+            files.add(file);
+        }
+        MemoryDataFile memoryFile = new MemoryDataFile();
+        memoryFile.autoSave = false;
+        coordinator.add(memoryFile);
+
+        for (int i = 0; i < files.size(); i++) {
+            files.get(i).set(new ClassTree<>(Integer.class), "value", i);
+        }
+        memoryFile.set(new ClassTree<>(Integer.class), "value", -1);
+        coordinator.saveChanges().get();
+
+        for (int i = 0; i < files.size(); i++) {
+            DataFile file = files.get(i);
+            Assertions.assertFalse(file.hasUnsavedChanges());
+            Assertions.assertEquals(i, (int) new DataFile(file.getFilePath()).get(new ClassTree<>(Integer.class), "value"));
+        }
+        Assertions.assertFalse(memoryFile.hasUnsavedChanges());
+
+        files.get(3).set(new ClassTree<>(Integer.class), "value", 300);
+        coordinator.remove(files.get(4));
+        files.get(4).set(new ClassTree<>(Integer.class), "value", 400);
+        coordinator.saveChanges().get();
+        Assertions.assertEquals(300, (int) new DataFile(files.get(3).getFilePath()).get(new ClassTree<>(Integer.class), "value"));
+        Assertions.assertTrue(files.get(4).hasUnsavedChanges());
+
+        for (DataFile file : files) {
+            TestUtilities.deleteFile(file.getFilePath());
+        }
+    }
+}